@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// =========================
+// Decouples the training loop from its accuracy consumers
+// =========================
+/**
+ * The trainer publishes into a {@link MetricsRing}; a daemon thread drains it every
+ * {@code intervalMs} and hands the points to each sink, followed by one flush per burst. A slow
+ * sink (Swing repaint, network drive) therefore only delays the sinks, never the training step.
+ */
+public class AccuracyPublisher implements AutoCloseable {
+    final MetricsRing ring = new MetricsRing(4096, 12);
+    final List<AccuracySink> sinks = new ArrayList<>();
+    final long intervalMs;
+    final double[] row = new double[12];
+    final Thread pump;
+    volatile boolean running = true;
+
+    public AccuracyPublisher(long intervalMs) {
+        this.intervalMs = intervalMs;
+        pump = new Thread(this::run, "accuracy-publisher");
+        pump.setDaemon(true);
+    }
+
+    public AccuracyPublisher addSink(AccuracySink sink) {
+        sinks.add(sink);
+        return this;
+    }
+
+    public void start() { pump.start(); }
+
+    /** Called from the training thread; never blocks. */
+    public void publish(int epoch, double totalAcc, double[] perDigitAcc) {
+        row[0] = epoch;
+        row[1] = totalAcc;
+        System.arraycopy(perDigitAcc, 0, row, 2, 10);
+        ring.offer(row);
+    }
+
+    private void run() {
+        while (running) {
+            drain();
+            try { Thread.sleep(intervalMs); } catch (InterruptedException e) { break; }
+        }
+    }
+
+    private void drain() {
+        double[] r = new double[12];
+        boolean any = false;
+        try {
+            while (ring.poll(r)) {
+                any = true;
+                double[] perDigit = Arrays.copyOfRange(r, 2, 12);
+                for (AccuracySink s : sinks) s.accept((int) r[0], r[1], perDigit);
+            }
+            if (any) for (AccuracySink s : sinks) s.flush();
+        } catch (IOException e) {
+            System.err.println("Accuracy sink failed: " + e.getMessage());
+        }
+    }
+
+    /** Stops the pump, drains what is left and closes every sink. */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        pump.interrupt();
+        try { pump.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        drain();
+        for (AccuracySink s : sinks) s.close();
+        if (ring.dropped > 0) System.err.println("Accuracy publisher dropped " + ring.dropped + " points");
+    }
+}
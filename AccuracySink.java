@@ -0,0 +1,14 @@
+import java.io.IOException;
+
+// =========================
+// Consumer of per-epoch accuracy points (visualizer, CSV log, ...)
+// =========================
+public interface AccuracySink {
+
+    void accept(int epoch, double totalAcc, double[] perDigitAcc) throws IOException;
+
+    /** Called once after each drained burst of points. */
+    default void flush() throws IOException {}
+
+    default void close() throws IOException { flush(); }
+}
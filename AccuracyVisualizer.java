@@ -0,0 +1,142 @@
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseMotionAdapter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// =========================
+// Live Accuracy Visualizer
+// =========================
+/**
+ * An {@link AccuracySink}: points arrive on the publisher thread, are buffered, and handed to the
+ * EDT once per flush with a single repaint. Panels keep their series in primitive arrays and, when
+ * there are more points than pixels, draw one min/max bar per pixel column instead of every point.
+ */
+public class AccuracyVisualizer extends JFrame implements AccuracySink {
+    private static final long serialVersionUID = 1L;
+    AccuracyPanel totalAccPanel;
+    AccuracyPanel[] digitPanels = new AccuracyPanel[10];
+    final List<double[]> pending = new ArrayList<>();   // publisher thread only
+
+    public AccuracyVisualizer() {
+        super("Live Accuracy Visualizer");
+        setLayout(new GridLayout(2, 1));
+
+        totalAccPanel = new AccuracyPanel("Total Accuracy");
+        add(totalAccPanel);
+
+        JPanel digitContainer = new JPanel(new GridLayout(2,5));
+        for(int i=0;i<10;i++){
+            digitPanels[i] = new AccuracyPanel("Test for "+i);
+            digitContainer.add(digitPanels[i]);
+        }
+        add(digitContainer);
+
+        setSize(1200,800);
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    @Override
+    public void accept(int epoch, double totalAcc, double[] perDigitAcc) {
+        double[] p = new double[12];
+        p[0] = epoch; p[1] = totalAcc;
+        System.arraycopy(perDigitAcc, 0, p, 2, 10);
+        pending.add(p);
+    }
+
+    @Override
+    public void flush() {
+        if (pending.isEmpty()) return;
+        double[][] batch = pending.toArray(new double[0][]);
+        pending.clear();
+        SwingUtilities.invokeLater(() -> {
+            for (double[] p : batch) {
+                totalAccPanel.addPoint(p[0], p[1]*100);
+                for(int i=0;i<10;i++) digitPanels[i].addPoint(p[0], p[2+i]*100);
+            }
+            repaint();
+        });
+    }
+
+    @Override
+    public void close() {}   // the window stays open after training so the curves can be inspected
+
+    static class AccuracyPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+        double[] xs = new double[256], ys = new double[256];
+        int n = 0;
+        String title;
+        public AccuracyPanel(String title){
+            this.title=title;
+            setBackground(Color.BLACK);
+            setToolTipText("");
+            addMouseMotionListener(new MouseMotionAdapter(){
+                public void mouseMoved(MouseEvent e){
+                    // tooltip on the point under the cursor column (x maps straight to an index)
+                    int plotW = getWidth()-60, h = getHeight(), plotH = h-50;
+                    if (n==0 || plotW<=0) { setToolTipText(null); return; }
+                    int i = (int)Math.round((e.getX()-40)/(double)plotW*(n-1));
+                    if (i<0 || i>=n) { setToolTipText(null); return; }
+                    int y = h-30 - (int)((ys[i]/100.0)*plotH);
+                    if (Math.abs(e.getY()-y)<5) setToolTipText(String.format("%s: ep=%s, %.2f%%", title, fmtX(xs[i]), ys[i]));
+                    else setToolTipText(null);
+                }
+            });
+        }
+        static String fmtX(double x){ return x==Math.rint(x) ? Long.toString((long)x) : String.format("%.2f", x); }
+
+        public void addPoint(double epoch, double val){
+            if (n==ys.length) { xs = Arrays.copyOf(xs, n*2); ys = Arrays.copyOf(ys, n*2); }
+            xs[n] = epoch; ys[n] = val; n++;
+        }
+        @Override
+        protected void paintComponent(Graphics g){
+            super.paintComponent(g);
+            Graphics2D g2=(Graphics2D)g;
+            g2.setColor(Color.WHITE);
+            g2.drawString(title, 10, 15);
+            int w = getWidth(), h = getHeight();
+            g2.setColor(Color.GRAY);
+            g2.drawLine(40, h-30, w-10, h-30);
+            g2.drawLine(40, h-30, 40, 10);
+
+            if (n==0) return;
+            double maxY = 100.0, minY = 0.0;
+            int plotW = w-60, plotH = h-50;
+            g2.setColor(Color.GREEN);
+            if (n <= plotW/4) {
+                // few points: draw each one
+                int px = 0, py = 0;
+                for (int i=0;i<n;i++){
+                    int x = 40 + (int)((i/(double)(Math.max(1,n-1)))*plotW);
+                    int y = h-30 - (int)(((ys[i]-minY)/(maxY-minY))*plotH);
+                    g2.fillOval(x-2,y-2,4,4);
+                    if (i>0) g2.drawLine(px,py,x,y);
+                    px = x; py = y;
+                }
+                return;
+            }
+            // many points: one min/max bar per pixel column
+            int prevY = Integer.MIN_VALUE;
+            for (int col=0; col<=plotW; col++){
+                int from = (int)((long)col*(n-1)/Math.max(1,plotW));
+                int to = Math.max(from+1, (int)((long)(col+1)*(n-1)/Math.max(1,plotW)));
+                double lo = ys[from], hi = ys[from];
+                for (int i=from+1; i<Math.min(to,n); i++){ lo = Math.min(lo, ys[i]); hi = Math.max(hi, ys[i]); }
+                int yLo = h-30 - (int)(((lo-minY)/(maxY-minY))*plotH);
+                int yHi = h-30 - (int)(((hi-minY)/(maxY-minY))*plotH);
+                if (prevY != Integer.MIN_VALUE) g2.drawLine(40+col-1, prevY, 40+col, yHi);
+                g2.drawLine(40+col, yLo, 40+col, yHi);
+                prevY = yLo;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+// =========================
+// Adam / AdamW
+// =========================
+/**
+ * With {@code decoupled} false, weight decay is classic L2 folded into the gradient (Adam).
+ * With it true, decay shrinks the weights directly and bypasses the moment estimates (AdamW).
+ */
+public class Adam extends Optimizer {
+    final double beta1, beta2, eps;
+    final boolean decoupled;
+
+    public Adam(double lr, double weightDecay, boolean decoupled) {
+        this(lr, weightDecay, decoupled, 0.9, 0.999, 1e-8);
+    }
+
+    public Adam(double lr, double weightDecay, boolean decoupled, double beta1, double beta2, double eps) {
+        super(lr, weightDecay);
+        this.decoupled = decoupled;
+        this.beta1 = beta1; this.beta2 = beta2; this.eps = eps;
+    }
+
+    @Override
+    protected int stateBuffers() { return 2; }   // first and second moments
+
+    @Override
+    protected void update(double[] p, double[] g, double[][] s, int off, int from, int to,
+                          double invBs, double decay) {
+        double[] m = s[0], v = s[1];
+        double b1 = beta1, b2 = beta2;
+        // bias corrections folded into the step size
+        double stepSize = lr * Math.sqrt(1 - Math.pow(b2, t)) / (1 - Math.pow(b1, t));
+        double l2 = decoupled ? 0.0 : decay;
+        double shrink = decoupled ? 1.0 - lr * decay : 1.0;
+        for (int i = from; i < to; i++) {
+            double grad = g[i] * invBs + l2 * p[i];
+            double mi = b1 * m[off + i] + (1 - b1) * grad;
+            double vi = b2 * v[off + i] + (1 - b2) * grad * grad;
+            m[off + i] = mi;
+            v[off + i] = vi;
+            p[i] = p[i] * shrink - stepSize * mi / (Math.sqrt(vi) + eps);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// =========================
+// Background augmentation feeding the trainer
+// =========================
+/**
+ * Keeps the training images as uint8 and augments them on worker threads while the model trains.
+ * {@link #start} takes the exact sample sequence the trainer is about to walk. Workers then fill
+ * chunks of {@code CHUNK} images, and {@link #next()} hands them out in that order. At most
+ * {@code depth} chunks are in flight, so memory stays bounded and workers never run far ahead.
+ * Chunk buffers are recycled double[][] rows. Each image is keyed by (seed, epoch, sample), so the
+ * output does not depend on thread count or timing.
+ * <p>
+ * {@link #report()} gives augmentation throughput and how long the trainer sat waiting. Any
+ * waiting means the workers are the bottleneck.
+ */
+public class AugmentPipeline implements AutoCloseable {
+    static final int CHUNK = 32;
+
+    final byte[] images;            // n * 784 uint8 pixels
+    final Augmenter proto;
+    final int threads, depth;
+    final ExecutorService pool;
+    final ThreadLocal<Augmenter> augmenters;
+    final ArrayBlockingQueue<double[][]> free;
+
+    private final ArrayDeque<Future<double[][]>> inFlight = new ArrayDeque<>();
+    private int[] seq = new int[0];
+    private long seed;
+    private int epoch, submitted, pos;
+    private double[][] current;
+
+    // stats since the last report()
+    private long waitNanos, produced;
+    private long busyNanos;          // summed over workers, updated under the lock below
+    private final Object statsLock = new Object();
+
+    /** {@code inputs} are [0, 1] images as produced by the CSV loader; they are stored as uint8. */
+    public AugmentPipeline(List<double[]> inputs, Augmenter augmenter, int threads) {
+        this.images = new byte[inputs.size() * Augmenter.PIXELS];
+        for (int s = 0; s < inputs.size(); s++) {
+            double[] x = inputs.get(s);
+            for (int p = 0; p < Augmenter.PIXELS; p++)
+                images[s * Augmenter.PIXELS + p] = (byte) Math.round(Math.max(0, Math.min(1, x[p])) * 255);
+        }
+        this.proto = augmenter;
+        this.threads = Math.max(1, threads);
+        this.depth = 4 * this.threads;
+        this.free = new ArrayBlockingQueue<>(depth + 1);
+        this.augmenters = ThreadLocal.withInitial(proto::copy);
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread th = new Thread(r, "augment-worker");
+            th.setDaemon(true);
+            return th;
+        });
+    }
+
+    /** Begins a new pass over {@code samples} (dataset indices, in training order). */
+    public void start(int[] samples, long seed, int epoch) {
+        for (Future<double[][]> f : inFlight) f.cancel(false);   // an epoch that ended early
+        inFlight.clear();
+        recycle();
+        this.seq = samples;
+        this.seed = seed;
+        this.epoch = epoch;
+        submitted = 0;
+        pos = 0;
+        while (inFlight.size() < depth && submit()) { }
+    }
+
+    /** The next augmented image of the sequence; valid until the following chunk is fetched. */
+    public double[] next() {
+        if (current == null || pos % CHUNK == 0) {
+            recycle();
+            long t0 = System.nanoTime();
+            try {
+                current = inFlight.removeFirst().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for augmented images", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Augmentation failed", e.getCause());
+            }
+            waitNanos += System.nanoTime() - t0;
+            submit();
+        }
+        return current[pos++ % CHUNK];
+    }
+
+    private void recycle() {
+        if (current != null) free.offer(current);
+        current = null;
+    }
+
+    private boolean submit() {
+        if (submitted >= seq.length) return false;
+        final int from = submitted, to = Math.min(from + CHUNK, seq.length);
+        final int[] s = seq;
+        final long sd = seed;
+        final int ep = epoch;
+        submitted = to;
+        inFlight.addLast(pool.submit(() -> {
+            long t0 = System.nanoTime();
+            double[][] buf = free.poll();
+            if (buf == null) buf = new double[CHUNK][Augmenter.PIXELS];
+            Augmenter aug = augmenters.get();
+            for (int k = from; k < to; k++)
+                aug.apply(images, s[k] * Augmenter.PIXELS, CounterRng.key(sd, ep, s[k]), buf[k - from]);
+            synchronized (statsLock) {
+                busyNanos += System.nanoTime() - t0;
+                produced += to - from;
+            }
+            return buf;
+        }));
+        return true;
+    }
+
+    /** One-line throughput summary since the previous call. */
+    public String report() {
+        long busy, n;
+        synchronized (statsLock) {
+            busy = busyNanos; n = produced;
+            busyNanos = 0; produced = 0;
+        }
+        double perThread = busy > 0 ? n / (busy / 1e9) : 0.0;
+        String line = String.format("augment: %d images, %.0f/s per worker x %d, trainer waited %.2f s",
+                n, perThread, threads, waitNanos / 1e9);
+        waitNanos = 0;
+        return line;
+    }
+
+    @Override
+    public void close() { pool.shutdownNow(); }
+
+    // =========================
+    // Throughput check (run: java AugmentPipeline [threads] [samples])
+    // =========================
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        List<double[]> xs = new ArrayList<>();
+        List<Integer> ys = new ArrayList<>();
+        SyntheticDigits.generate(1000, 1, xs, ys);
+        int[] order = new int[samples];
+        Random r = new Random(1);
+        for (int i = 0; i < samples; i++) order[i] = r.nextInt(xs.size());
+
+        try (AugmentPipeline p = new AugmentPipeline(xs, new Augmenter(), threads)) {
+            for (int epoch = 1; epoch <= 2; epoch++) {   // first pass warms up the JIT
+                long t0 = System.nanoTime();
+                p.start(order, 42, epoch);
+                double sink = 0;
+                for (int i = 0; i < samples; i++) sink += p.next()[400];
+                double secs = (System.nanoTime() - t0) / 1e9;
+                System.out.printf("pass %d: %.0f images/s end to end (%s) [%.1f]%n",
+                        epoch, samples / secs, p.report(), sink);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// =========================
+// Image augmentation for 28x28 uint8 digits
+// =========================
+/**
+ * One random warp per call: rotation, shift and a smooth elastic distortion combined into a single
+ * inverse mapping with bilinear sampling, then an optional stroke-thickness change (dilate or erode
+ * over the 4-neighbourhood; a full 3x3 erode wipes out most MNIST strokes). All randomness comes
+ * from a {@link CounterRng} key, so a given (seed, epoch, sample) always produces the same image.
+ * Not thread-safe (scratch buffers); use one per thread.
+ */
+public class Augmenter {
+    static final int SIDE = 28, PIXELS = SIDE * SIDE;
+    static final int GRID = 4;   // elastic control points per side, bilinearly upsampled
+
+    double maxShift = 2.0;       // pixels
+    double maxRotateDeg = 12.0;
+    double elasticAlpha = 1.5;   // max control-point displacement, pixels
+    double thickenProb = 0.15, thinProb = 0.15;
+
+    private final double[] img = new double[PIXELS], tmp = new double[PIXELS];
+    private final double[] gx = new double[GRID * GRID], gy = new double[GRID * GRID];
+
+    public Augmenter copy() {
+        Augmenter a = new Augmenter();
+        a.maxShift = maxShift; a.maxRotateDeg = maxRotateDeg; a.elasticAlpha = elasticAlpha;
+        a.thickenProb = thickenProb; a.thinProb = thinProb;
+        return a;
+    }
+
+    /** Augments src[off..off+784) (uint8 pixels) into out, scaled to [0, 1] like the CSV loader. */
+    public void apply(byte[] src, int off, long key, double[] out) {
+        int draw = 0;
+        double angle = Math.toRadians(maxRotateDeg) * (2 * CounterRng.uniform(key, draw++) - 1);
+        double sx = maxShift * (2 * CounterRng.uniform(key, draw++) - 1);
+        double sy = maxShift * (2 * CounterRng.uniform(key, draw++) - 1);
+        for (int g = 0; g < gx.length; g++) {
+            gx[g] = elasticAlpha * (2 * CounterRng.uniform(key, draw++) - 1);
+            gy[g] = elasticAlpha * (2 * CounterRng.uniform(key, draw++) - 1);
+        }
+        double stroke = CounterRng.uniform(key, draw);
+
+        // inverse map: output pixel -> source position
+        double cos = Math.cos(angle), sin = Math.sin(angle), c = (SIDE - 1) / 2.0;
+        double gScale = (GRID - 1) / (double) (SIDE - 1);
+        for (int i = 0; i < SIDE; i++) {
+            double gi = i * gScale;
+            int g0 = Math.min((int) gi, GRID - 2);
+            double fi = gi - g0;
+            for (int j = 0; j < SIDE; j++) {
+                double gj = j * gScale;
+                int h0 = Math.min((int) gj, GRID - 2);
+                double fj = gj - h0;
+                int q = g0 * GRID + h0;
+                double ex = lerp2(gx[q], gx[q + 1], gx[q + GRID], gx[q + GRID + 1], fi, fj);
+                double ey = lerp2(gy[q], gy[q + 1], gy[q + GRID], gy[q + GRID + 1], fi, fj);
+                double y0 = i - c - sy, x0 = j - c - sx;
+                double srcY = cos * y0 - sin * x0 + c + ey;
+                double srcX = sin * y0 + cos * x0 + c + ex;
+                img[i * SIDE + j] = sample(src, off, srcY, srcX);
+            }
+        }
+
+        if (stroke < thickenProb) morph(img, tmp, true);
+        else if (stroke < thickenProb + thinProb) morph(img, tmp, false);
+        for (int p = 0; p < PIXELS; p++) out[p] = img[p] / 255.0;
+    }
+
+    private static double lerp2(double a, double b, double c, double d, double fi, double fj) {
+        return (a * (1 - fj) + b * fj) * (1 - fi) + (c * (1 - fj) + d * fj) * fi;
+    }
+
+    // bilinear read with zero outside the image
+    private static double sample(byte[] src, int off, double y, double x) {
+        int y0 = (int) Math.floor(y), x0 = (int) Math.floor(x);
+        double fy = y - y0, fx = x - x0;
+        return (px(src, off, y0, x0) * (1 - fx) + px(src, off, y0, x0 + 1) * fx) * (1 - fy)
+             + (px(src, off, y0 + 1, x0) * (1 - fx) + px(src, off, y0 + 1, x0 + 1) * fx) * fy;
+    }
+
+    private static int px(byte[] src, int off, int y, int x) {
+        if (y < 0 || y >= SIDE || x < 0 || x >= SIDE) return 0;
+        return src[off + y * SIDE + x] & 0xFF;
+    }
+
+    // max (thicker strokes) or min (thinner strokes) over the pixel and its 4 neighbours, via tmp
+    private static void morph(double[] a, double[] tmp, boolean dilate) {
+        for (int i = 0; i < SIDE; i++) {
+            for (int j = 0; j < SIDE; j++) {
+                double v = a[i * SIDE + j];
+                double up = i > 0 ? a[(i - 1) * SIDE + j] : 0.0, down = i < SIDE - 1 ? a[(i + 1) * SIDE + j] : 0.0;
+                double left = j > 0 ? a[i * SIDE + j - 1] : 0.0, right = j < SIDE - 1 ? a[i * SIDE + j + 1] : 0.0;
+                tmp[i * SIDE + j] = dilate
+                        ? Math.max(Math.max(v, up), Math.max(down, Math.max(left, right)))
+                        : Math.min(Math.min(v, up), Math.min(down, Math.min(left, right)));
+            }
+        }
+        System.arraycopy(tmp, 0, a, 0, PIXELS);
+    }
+}
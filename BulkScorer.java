@@ -0,0 +1,282 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// =========================
+// Streaming bulk scorer (run: java BulkScorer --in FILE --out FILE [options])
+// =========================
+/**
+ * Scores a file of images of any size with a trained DigitRecognizer model, in constant memory.
+ * A reader thread parses fixed-size batches into recycled uint8 buffers, the calling thread scores
+ * them with a {@link Predictor}, and a writer thread appends "index,prediction,confidence[,label]"
+ * lines. The queues between the stages hold at most {@code QUEUE} batches, so a slow disk or a slow
+ * model throttles the reader instead of filling the heap.
+ * <p>
+ * Options:
+ *   --in FILE             input images
+ *   --format csv|idx|raw  default from the extension (.csv, .idx/-ubyte, anything else raw)
+ *                         csv: optional header, 784 pixel columns, optional trailing label (the
+ *                         training CSV layout); idx: MNIST idx3-ubyte; raw: 784 bytes per image
+ *   --labels FILE         MNIST idx1-ubyte labels to go with --format idx
+ *   --out FILE            predictions CSV (default predictions.csv)
+ *   --weights FILE        weights.dat, or a weights.bin from saveMapped (default weights.dat)
+ *   --threads N           scoring threads (default: all cores)
+ *   --batch B             images per batch (default 1024)
+ */
+public class BulkScorer {
+    static final int PIXELS = 784;
+    static final int QUEUE = 4;
+
+    static final class Batch {
+        final byte[] pixels;
+        final int[] labels;
+        long first;        // index of the first image in the input
+        int n;             // 0 marks the end of the stream
+        Predictor.Result result;
+
+        Batch(int size) { pixels = new byte[size * PIXELS]; labels = new int[size]; }
+    }
+
+    interface Reader extends AutoCloseable {
+        /** Reads one image into pixels[off..off+784); returns its label, -1 if none, or -2 at end of input. */
+        int read(byte[] pixels, int off) throws IOException;
+        @Override void close() throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = RunConfig.parse(args);
+        String in = opt.get("in");
+        if (in == null) { System.err.println("usage: BulkScorer --in FILE [--format csv|idx|raw] [--labels FILE] [--out FILE] [--weights FILE] [--threads N] [--batch B]"); System.exit(2); }
+        String format = opt.getOrDefault("format", in.endsWith(".csv") ? "csv" : in.endsWith(".idx") || in.endsWith("ubyte") ? "idx" : "raw");
+        String weights = opt.getOrDefault("weights", "weights.dat");
+        int threads = Integer.parseInt(opt.getOrDefault("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        int batchSize = Integer.parseInt(opt.getOrDefault("batch", "1024"));
+
+        Sequential model = DigitRecognizer.loadModel(weights);
+
+        try (Reader reader = open(format, in, opt.get("labels"));
+             Predictor predictor = new Predictor(model, threads);
+             BufferedWriter out = new BufferedWriter(new FileWriter(opt.getOrDefault("out", "predictions.csv")), 1 << 16)) {
+            long[] stats = run(reader, predictor, out, batchSize);
+            double secs = stats[2] / 1e9;
+            System.out.printf("Scored %d images in %.1f s: %.0f images/s%s%n", stats[0], secs, stats[0] / secs,
+                    stats[3] > 0 ? String.format(", accuracy %.2f%% on %d labelled", 100.0 * stats[1] / stats[3], stats[3]) : "");
+        }
+    }
+
+    /** Returns {images, correct, nanos, labelled}. */
+    static long[] run(Reader reader, Predictor predictor, BufferedWriter out, int batchSize) throws Exception {
+        BlockingQueue<Batch> free = new ArrayBlockingQueue<>(QUEUE + 2), filled = new ArrayBlockingQueue<>(QUEUE),
+                scored = new ArrayBlockingQueue<>(QUEUE);
+        for (int i = 0; i < QUEUE + 2; i++) free.add(new Batch(batchSize));
+        Exception[] failure = new Exception[2];
+        long[] stats = new long[4];
+        long t0 = System.nanoTime();
+
+        Thread readThread = new Thread(() -> {
+            long next = 0;
+            try {
+                while (true) {
+                    Batch b = free.take();
+                    b.first = next;
+                    b.n = 0;
+                    int label;
+                    while (b.n < batchSize && (label = reader.read(b.pixels, b.n * PIXELS)) != -2) b.labels[b.n++] = label;
+                    next += b.n;
+                    filled.put(b);
+                    if (b.n < batchSize) break;   // short (or empty) batch: input exhausted
+                }
+            } catch (InterruptedException e) {
+                // scoring failed and the main thread is no longer taking batches
+            } catch (Exception e) {
+                failure[0] = e;
+                try { filled.put(new Batch(0)); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+            }
+        }, "score-reader");
+
+        Thread writeThread = new Thread(() -> {
+            // after a write error keep draining, so the other stages never block on a full queue
+            StringBuilder line = new StringBuilder(64);
+            try {
+                while (true) {
+                    Batch b = scored.take();
+                    if (b.n == 0) break;
+                    Predictor.Result r = b.result;
+                    for (int i = 0; i < b.n && failure[1] == null; i++) {
+                        line.setLength(0);
+                        line.append(b.first + i).append(',').append(r.argmax[i]).append(',').append(r.topProbs[i]);
+                        if (b.labels[i] >= 0) {
+                            line.append(',').append(b.labels[i]);
+                            stats[3]++;
+                            if (b.labels[i] == r.argmax[i]) stats[1]++;
+                        }
+                        try { out.append(line).append('\n'); } catch (IOException e) { failure[1] = e; }
+                    }
+                    stats[0] += b.n;
+                    boolean last = b.n < batchSize;
+                    b.result = null;
+                    free.put(b);
+                    if (last) break;
+                }
+                if (failure[1] == null) out.flush();
+            } catch (IOException e) {
+                failure[1] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "score-writer");
+
+        out.write("index,prediction,confidence,label\n");
+        readThread.start();
+        writeThread.start();
+        long lastReport = t0, scoredCount = 0;
+        boolean finished = false;
+        try {
+            while (true) {
+                Batch b = filled.take();
+                if (b.n > 0) b.result = predictor.predictBatch(b.pixels, b.n, 1);
+                scored.put(b);
+                scoredCount += b.n;
+                if (System.nanoTime() - lastReport > 5_000_000_000L) {
+                    lastReport = System.nanoTime();
+                    System.err.printf("  %d images, %.0f images/s%n", scoredCount, scoredCount / ((lastReport - t0) / 1e9));
+                }
+                if (b.n < batchSize) break;
+            }
+            finished = true;
+        } finally {
+            // on a scoring failure nothing feeds the queues again: stop both stages before rethrowing
+            if (!finished) {
+                readThread.interrupt();
+                scored.put(new Batch(0));
+            }
+            readThread.join();
+            writeThread.join();
+        }
+        stats[2] = System.nanoTime() - t0;
+        if (failure[0] != null) throw new IOException("Reading input failed", failure[0]);
+        if (failure[1] != null) throw new IOException("Writing predictions failed", failure[1]);
+        return stats;
+    }
+
+    static Reader open(String format, String path, String labelsPath) throws IOException {
+        switch (format) {
+            case "csv": return new CsvReader(path);
+            case "idx": return new IdxReader(path, labelsPath);
+            case "raw": return new RawReader(path);
+            default: throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    // ----- CSV: byte-level parser, one row at a time -----
+    static final class CsvReader implements Reader {
+        final InputStream in;
+        final int[] row = new int[PIXELS + 1];
+        boolean first = true;
+
+        CsvReader(String path) throws IOException { in = new BufferedInputStream(new FileInputStream(path), 1 << 16); }
+
+        @Override
+        public int read(byte[] pixels, int off) throws IOException {
+            int cols;
+            while (true) {
+                cols = readRow();
+                if (cols == -1) return -2;
+                if (cols == -3) { first = false; continue; }   // header
+                if (cols > 0) break;                           // skip blank lines
+            }
+            first = false;
+            if (cols != PIXELS && cols != PIXELS + 1)
+                throw new IOException("Expected 784 or 785 columns, got " + cols);
+            for (int p = 0; p < PIXELS; p++) pixels[off + p] = (byte) row[p];
+            return cols == PIXELS + 1 ? row[PIXELS] : -1;
+        }
+
+        // number of columns, -1 at end of input, -3 for a non-numeric first line
+        private int readRow() throws IOException {
+            int c = in.read();
+            if (c == -1) return -1;
+            int cols = 0, value = 0;
+            boolean digits = false, text = false, fraction = false;   // fractional digits are dropped
+            while (c != -1 && c != '\n') {
+                if (c >= '0' && c <= '9') { if (!fraction) value = value * 10 + (c - '0'); digits = true; }
+                else if (c == ',') { store(cols++, value); value = 0; digits = false; fraction = false; }
+                else if (c == '.') fraction = true;
+                else if (c != '\r' && c != ' ') text = true;
+                c = in.read();
+            }
+            if (digits || cols > 0) store(cols++, value);
+            if (text) {
+                if (first) return -3;
+                throw new IOException("Non-numeric value in CSV row");
+            }
+            return cols;
+        }
+
+        private void store(int col, int value) { if (col < row.length) row[col] = value; }
+
+        @Override public void close() throws IOException { in.close(); }
+    }
+
+    // ----- MNIST idx3-ubyte images (+ optional idx1-ubyte labels) -----
+    static final class IdxReader implements Reader {
+        final DataInputStream images, labels;
+        long remaining;
+
+        IdxReader(String path, String labelsPath) throws IOException {
+            images = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+            if (images.readInt() != 0x00000803) throw new IOException("Not an idx3-ubyte image file: " + path);
+            remaining = images.readInt() & 0xFFFFFFFFL;
+            int rows = images.readInt(), cols = images.readInt();
+            if (rows * cols != PIXELS) throw new IOException("Expected 28x28 images, got " + rows + "x" + cols);
+            if (labelsPath == null) { labels = null; return; }
+            labels = new DataInputStream(new BufferedInputStream(new FileInputStream(labelsPath), 1 << 16));
+            if (labels.readInt() != 0x00000801) throw new IOException("Not an idx1-ubyte label file: " + labelsPath);
+            if ((labels.readInt() & 0xFFFFFFFFL) != remaining) throw new IOException("Label count does not match image count");
+        }
+
+        @Override
+        public int read(byte[] pixels, int off) throws IOException {
+            if (remaining == 0) return -2;
+            remaining--;
+            images.readFully(pixels, off, PIXELS);
+            return labels == null ? -1 : labels.readUnsignedByte();
+        }
+
+        @Override
+        public void close() throws IOException {
+            images.close();
+            if (labels != null) labels.close();
+        }
+    }
+
+    // ----- Raw: 784 uint8 pixels per image, no header -----
+    static final class RawReader implements Reader {
+        final DataInputStream in;
+
+        RawReader(String path) throws IOException { in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16)); }
+
+        @Override
+        public int read(byte[] pixels, int off) throws IOException {
+            int first = in.read();
+            if (first == -1) return -2;
+            pixels[off] = (byte) first;
+            try {
+                in.readFully(pixels, off + 1, PIXELS - 1);
+            } catch (EOFException e) {
+                throw new IOException("Truncated image at end of raw input", e);
+            }
+            return -1;
+        }
+
+        @Override public void close() throws IOException { in.close(); }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// =========================
+// Model compression workflow (run: java Compress --train FILE.csv --test FILE.csv [options])
+// =========================
+/**
+ * Produces smaller inference models from a trained DigitRecognizer and reports size, latency and
+ * accuracy for each one next to the original:
+ * <ul>
+ *   <li>pruned: Dense weights pruned by magnitude to each sparsity in turn, fine-tuned with the
+ *       pruned weights held at zero, then stored and run as CSR ({@link SparseDense}). Each level
+ *       starts from the fine-tuned previous one.</li>
+ *   <li>student: a smaller network (fewer filters and hidden units) trained from scratch on the
+ *       teacher's softened outputs ({@link Distillation}).</li>
+ * </ul>
+ * Options:
+ *   --weights FILE         teacher weights (default weights.dat, or a weights.bin)
+ *   --sparsity LIST        comma-separated, ascending (default 0.5,0.8,0.9,0.95)
+ *   --finetune E           epochs of fine-tuning per sparsity level (default 1)
+ *   --student F,H1,H2      student filters and hidden sizes (default 8,128,64)
+ *   --distill-epochs E     student training epochs (default 5)
+ *   --limit N              use the first N training samples (default all)
+ * Writes weights_pruned{NN}.csr and weights_student.dat (build the student with the same
+ * F,H1,H2 to load it).
+ */
+public class Compress {
+    static final int PIXELS = 784;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = RunConfig.parse(args);
+        if (!opt.containsKey("train") || !opt.containsKey("test")) {
+            System.err.println("usage: Compress --train FILE.csv --test FILE.csv [--weights FILE] [--sparsity 0.5,0.8,...] [--finetune E] [--student F,H1,H2] [--distill-epochs E] [--limit N]");
+            System.exit(2);
+        }
+        String weights = opt.getOrDefault("weights", "weights.dat");
+        double[] levels = Arrays.stream(opt.getOrDefault("sparsity", "0.5,0.8,0.9,0.95").split(",")).mapToDouble(Double::parseDouble).toArray();
+        int finetune = Integer.parseInt(opt.getOrDefault("finetune", "1"));
+        int[] student = Arrays.stream(opt.getOrDefault("student", "8,128,64").split(",")).mapToInt(Integer::parseInt).toArray();
+        int distillEpochs = Integer.parseInt(opt.getOrDefault("distill-epochs", "5"));
+
+        List<double[]> trainX = DigitRecognizer.loadInputs(opt.get("train"), PIXELS);
+        List<Integer> trainY = DigitRecognizer.loadLabels(opt.get("train"), PIXELS);
+        int limit = Math.min(trainX.size(), Integer.parseInt(opt.getOrDefault("limit", Integer.toString(trainX.size()))));
+        trainX = trainX.subList(0, limit);
+        trainY = trainY.subList(0, limit);
+        List<double[]> testX = DigitRecognizer.loadInputs(opt.get("test"), PIXELS);
+        List<Integer> testY = DigitRecognizer.loadLabels(opt.get("test"), PIXELS);
+
+        Sequential teacher = DigitRecognizer.loadModel(weights);
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-22s %12s %10s %9s %9s %14s%n",
+                "variant", "weights", "file KB", "ms/img", "accuracy", "before tuning"));
+        row(report, "original", weights, teacher, countWeights(teacher), testX, testY, Double.NaN);
+
+        // ----- Magnitude pruning + fine-tuning, stored as CSR -----
+        Sequential pruned = DigitRecognizer.loadModel(weights);
+        Pruning pruning = new Pruning(pruned);
+        for (double level : levels) {
+            pruning.prune(level);
+            double before = accuracy(pruned, testX, testY);
+            if (finetune > 0) {
+                Trainer t = trainer(pruned, finetune, new Sgd(0.005, 0.0001, 0.9, true));
+                t.pruning = pruning;
+                t.train(trainX, trainY, testX, testY);
+            }
+            Sequential sparse = Pruning.toSparse(pruned);
+            String file = String.format(Locale.ROOT, "weights_pruned%02d.csr", Math.round(level * 100));
+            Pruning.saveSparse(sparse, file);
+            row(report, String.format(Locale.ROOT, "pruned %.0f%% (CSR)", level * 100), file, sparse,
+                    countWeights(sparse), testX, testY, before);
+        }
+
+        // ----- Distilled student -----
+        Sequential small = DigitRecognizer.buildModel(student[0], student[1], student[2], 0.1, new Random(7));
+        Distillation distill = new Distillation(teacher);
+        Trainer t = trainer(small, distillEpochs, new Sgd(0.01, 0.0001, 0.9, true));
+        t.distill = distill;
+        t.train(trainX, trainY, testX, testY);
+        small.save("weights_student.dat");
+        row(report, String.format(Locale.ROOT, "student %d/%d/%d", student[0], student[1], student[2]),
+                "weights_student.dat", small, countWeights(small), testX, testY, Double.NaN);
+
+        System.out.println();
+        System.out.print(report);
+    }
+
+    private static Trainer trainer(Sequential model, int epochs, Optimizer optimizer) {
+        Trainer t = new Trainer(model, new Random(1));
+        t.optimizer = optimizer;
+        t.maxEpochs = epochs;
+        t.headless = true;
+        t.logPath = "compress_log.csv";
+        return t;
+    }
+
+    private static long countWeights(Sequential m) {
+        long n = 0;
+        for (double[] p : m.params()) n += p.length;
+        return n;
+    }
+
+    private static double accuracy(Sequential m, List<double[]> xs, List<Integer> ys) {
+        Trainer t = new Trainer(m, new Random(0));
+        double acc = t.evaluate(xs, ys, new double[10]);
+        t.shutdownEval();
+        return acc;
+    }
+
+    // single-threaded latency over up to 2000 test images, after a warm-up pass
+    private static void row(StringBuilder report, String name, String file, Sequential m, long weights,
+                            List<double[]> xs, List<Integer> ys, double before) {
+        int n = Math.min(xs.size(), 2000);
+        for (int i = 0; i < Math.min(n, 300); i++) m.predict(xs.get(i));
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) m.predict(xs.get(i));
+        double ms = (System.nanoTime() - t0) / 1e6 / Math.max(1, n);
+        double acc = accuracy(m, xs, ys);
+        report.append(String.format(Locale.ROOT, "%-22s %12d %10.1f %9.3f %8.2f%% %14s%n", name, weights,
+                new File(file).length() / 1024.0, ms, acc * 100,
+                Double.isNaN(before) ? "" : String.format(Locale.ROOT, "%.2f%%", before * 100)));
+    }
+}
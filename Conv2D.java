@@ -0,0 +1,182 @@
+import java.util.Random;
+
+// =========================
+// Conv2D (valid padding, stride 1)
+// =========================
+public class Conv2D implements Layer {
+    final int inC, inH, inW;
+    final int outC, kH, kW;
+    final int outH, outW;
+
+    // Parameters: K is [outC][inC][kH][kW], B is [outC]
+    final double[] K, B;
+    final double[] dK, dB;
+
+    // Batched grads: per-sample input and output grad, dK reduced once per batch in flushGrads()
+    boolean batched = false;
+    double[] batchX = new double[0], batchDy = new double[0];
+    int cap = 0, pending = 0;
+
+    // Caches for backprop
+    double[] x;         // [inC][inH][inW] input of the last forward call
+    final double[] y;   // [outC][outH][outW]
+    final double[] dx;
+
+    public Conv2D(int inC, int inH, int inW, int outC, int kH, int kW, Random rnd) {
+        this(inC, inH, inW, outC, kH, kW, new double[outC * inC * kH * kW], new double[outC]);
+        heInit(rnd);
+    }
+
+    private Conv2D(int inC, int inH, int inW, int outC, int kH, int kW, double[] K, double[] B) {
+        this.inC = inC; this.inH = inH; this.inW = inW;
+        this.outC = outC; this.kH = kH; this.kW = kW;
+        this.outH = inH - kH + 1;
+        this.outW = inW - kW + 1;
+        this.K = K; this.B = B;
+        dK = new double[K.length]; dB = new double[outC];
+        y = new double[outC * outH * outW];
+        dx = new double[inC * inH * inW];
+    }
+
+    @Override
+    public Layer replica(Random rnd) {
+        Conv2D c = new Conv2D(inC, inH, inW, outC, kH, kW, K, B);
+        c.batched = batched;
+        return c;
+    }
+
+    private void heInit(Random rnd) {
+        double scale = Math.sqrt(2.0 / (inC * kH * kW));
+        for (int i = 0; i < K.length; i++) K[i] = rnd.nextGaussian() * scale;
+    }
+
+    public int outSize() { return y.length; }
+
+    @Override
+    public double[] forward(double[] input, boolean training) {
+        x = input;
+        for (int f = 0; f < outC; f++) {
+            for (int i = 0; i < outH; i++) {
+                for (int j = 0; j < outW; j++) {
+                    double s = B[f];
+                    for (int c = 0; c < inC; c++) {
+                        int kBase = (f * inC + c) * kH * kW;
+                        int xBase = c * inH * inW;
+                        for (int ki = 0; ki < kH; ki++)
+                            for (int kj = 0; kj < kW; kj++)
+                                s += x[xBase + (i + ki) * inW + j + kj] * K[kBase + ki * kW + kj];
+                    }
+                    y[(f * outH + i) * outW + j] = s;
+                }
+            }
+        }
+        return y;
+    }
+
+    @Override
+    public double[] backward(double[] dy, boolean propagate) {
+        if (batched) return backwardBatched(dy, propagate);
+        if (propagate) java.util.Arrays.fill(dx, 0.0);
+        for (int f = 0; f < outC; f++) {
+            double db = 0.0;
+            for (int i = 0; i < outH; i++) {
+                for (int j = 0; j < outW; j++) {
+                    double g = dy[(f * outH + i) * outW + j];
+                    db += g;
+                    for (int c = 0; c < inC; c++) {
+                        int kBase = (f * inC + c) * kH * kW;
+                        int xBase = c * inH * inW;
+                        for (int ki = 0; ki < kH; ki++) {
+                            for (int kj = 0; kj < kW; kj++) {
+                                int xi = xBase + (i + ki) * inW + j + kj;
+                                dK[kBase + ki * kW + kj] += x[xi] * g;
+                                if (propagate) dx[xi] += K[kBase + ki * kW + kj] * g;
+                            }
+                        }
+                    }
+                }
+            }
+            dB[f] += db;
+        }
+        return propagate ? dx : null;
+    }
+
+    private double[] backwardBatched(double[] dy, boolean propagate) {
+        if (pending == cap) {
+            cap = Math.max(8, cap * 2);
+            batchX = java.util.Arrays.copyOf(batchX, cap * x.length);
+            batchDy = java.util.Arrays.copyOf(batchDy, cap * y.length);
+        }
+        System.arraycopy(x, 0, batchX, pending * x.length, x.length);
+        System.arraycopy(dy, 0, batchDy, pending * y.length, y.length);
+        pending++;
+
+        int plane = outH * outW;
+        for (int f = 0; f < outC; f++) {
+            double db = 0.0;
+            for (int o = f * plane; o < (f + 1) * plane; o++) db += dy[o];
+            dB[f] += db;
+        }
+        if (!propagate) return null;
+        java.util.Arrays.fill(dx, 0.0);
+        for (int f = 0; f < outC; f++) {
+            for (int i = 0; i < outH; i++) {
+                for (int j = 0; j < outW; j++) {
+                    double g = dy[(f * outH + i) * outW + j];
+                    if (g == 0.0) continue;
+                    for (int c = 0; c < inC; c++) {
+                        int kBase = (f * inC + c) * kH * kW;
+                        int xBase = c * inH * inW;
+                        for (int ki = 0; ki < kH; ki++)
+                            for (int kj = 0; kj < kW; kj++)
+                                dx[xBase + (i + ki) * inW + j + kj] += K[kBase + ki * kW + kj] * g;
+                    }
+                }
+            }
+        }
+        return dx;
+    }
+
+    @Override
+    public void flushGrads() {
+        if (pending == 0) return;
+        // each kernel tap is reduced over (sample, i, j) in a register: same order as the
+        // per-sample loop, one store per batch instead of one per output position
+        int xLen = x.length, yLen = y.length;
+        for (int f = 0; f < outC; f++) {
+            for (int c = 0; c < inC; c++) {
+                for (int ki = 0; ki < kH; ki++) {
+                    for (int kj = 0; kj < kW; kj++) {
+                        int k = ((f * inC + c) * kH + ki) * kW + kj;
+                        double acc = dK[k];
+                        for (int s = 0; s < pending; s++) {
+                            int xBase = s * xLen + c * inH * inW + ki * inW + kj;
+                            int gBase = s * yLen + f * outH * outW;
+                            for (int i = 0; i < outH; i++)
+                                for (int j = 0; j < outW; j++)
+                                    acc += batchX[xBase + i * inW + j] * batchDy[gBase + i * outW + j];
+                        }
+                        dK[k] = acc;
+                    }
+                }
+            }
+        }
+        pending = 0;
+    }
+
+    @Override
+    public void setBatchedGrads(boolean batched) {
+        flushGrads();
+        this.batched = batched;
+    }
+
+    @Override public double[][] params() { return new double[][]{K, B}; }
+    @Override public double[][] grads()  { return new double[][]{dK, dB}; }
+
+    @Override
+    public int[][] shapes() {
+        // single-channel kernels keep the [F][kH][kW] layout weights.dat has always used
+        int[] kShape = inC == 1 ? new int[]{outC, kH, kW} : new int[]{outC, inC, kH, kW};
+        return new int[][]{kShape, {outC}};
+    }
+}
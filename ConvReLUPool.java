@@ -0,0 +1,269 @@
+import java.util.Random;
+
+// =========================
+// Fused Conv2D + ReLU + MaxPool 2x2
+// =========================
+/**
+ * Same result as {@code Conv2D -> ReLU -> MaxPool}, computed one pool window at a time: the four
+ * conv outputs of a window are summed in registers, rectified and reduced to their max, and only
+ * the pooled value plus a 2-bit argmax code (row * 2 + col inside the window) are kept. The conv
+ * and ReLU maps are never materialized, and backward scatters only through the argmax positions.
+ * <p>
+ * Parameters, init and saved shapes are those of the wrapped {@link Conv2D}, and the sums run in
+ * the same order as the unfused layers, so outputs and grads match them bit for bit.
+ * <p>
+ * Dead-ReLU tracking works as in {@link ReLU}: while {@code tracking} is on (sampled batches only),
+ * forward takes the generic loops and marks every conv unit of the pool windows that fired.
+ */
+public class ConvReLUPool implements Layer {
+    /** Forward kernel for one fixed shape; see {@link KernelGen}. */
+    interface Kernel { void forward(double[] x, double[] K, double[] B, double[] y, byte[] arg); }
+
+    final Conv2D conv;
+    Kernel kernel;                 // shape-specialized forward, or null for the generic loops
+    final int outC, outH, outW;    // pooled output, [outC][outH][outW]
+
+    final double[] y;
+    final byte[] arg;              // argmax code per pooled output
+    final int[] gPos;              // scratch: conv-plane positions with a nonzero grad, row-major per filter
+    final double[] gVal;
+    final int[] gStart;            // gPos/gVal range of each filter is [gStart[f], gStart[f + 1])
+    double[] x;                    // input of the last forward call
+    final double[] dx;
+    boolean tracking;              // set by TrainingMetrics on sampled batches
+    boolean[] fired;               // conv units of the pooled windows, [outC][2 * outH][2 * outW]
+
+    // Batched grads: input and compact grad list per sample, dK reduced once per batch
+    boolean batched = false;
+    double[] batchX = new double[0], batchG = new double[0];
+    int[] batchPos = new int[0], batchStart = new int[0];
+    int cap = 0, pending = 0;
+
+    public ConvReLUPool(int inC, int inH, int inW, int outC, int kH, int kW, Random rnd) {
+        this(new Conv2D(inC, inH, inW, outC, kH, kW, rnd));
+    }
+
+    private ConvReLUPool(Conv2D conv) {
+        this.conv = conv;
+        this.outC = conv.outC;
+        this.outH = conv.outH / 2;
+        this.outW = conv.outW / 2;
+        y = new double[outC * outH * outW];
+        arg = new byte[y.length];
+        gPos = new int[y.length];
+        gVal = new double[y.length];
+        gStart = new int[outC + 1];
+        dx = new double[conv.inC * conv.inH * conv.inW];
+        kernel = GeneratedKernels.convReLUPool(conv.inC, conv.inH, conv.inW, outC, conv.kH, conv.kW);
+    }
+
+    public int outSize() { return y.length; }
+
+    @Override
+    public Layer replica(Random rnd) {
+        ConvReLUPool r = new ConvReLUPool((Conv2D) conv.replica(rnd));
+        r.batched = batched;
+        return r;
+    }
+
+    @Override
+    public double[] forward(double[] input, boolean training) {
+        x = input;
+        if (kernel != null && !tracking) {
+            kernel.forward(x, conv.K, conv.B, y, arg);
+            return y;
+        }
+        final int inC = conv.inC, inH = conv.inH, inW = conv.inW, kH = conv.kH, kW = conv.kW;
+        final double[] K = conv.K;
+        int o = 0;
+        for (int f = 0; f < outC; f++) {
+            double bias = conv.B[f];
+            for (int pi = 0; pi < outH; pi++) {
+                for (int pj = 0; pj < outW; pj++) {
+                    double s00 = bias, s01 = bias, s10 = bias, s11 = bias;
+                    int r0 = 2 * pi, c0 = 2 * pj;
+                    for (int c = 0; c < inC; c++) {
+                        int kBase = (f * inC + c) * kH * kW;
+                        int xBase = c * inH * inW + r0 * inW + c0;
+                        for (int ki = 0; ki < kH; ki++) {
+                            for (int kj = 0; kj < kW; kj++) {
+                                double k = K[kBase + ki * kW + kj];
+                                int xi = xBase + ki * inW + kj;
+                                s00 += x[xi] * k;
+                                s01 += x[xi + 1] * k;
+                                s10 += x[xi + inW] * k;
+                                s11 += x[xi + inW + 1] * k;
+                            }
+                        }
+                    }
+                    // same scan as MaxPool over the rectified window: strict >, first max wins
+                    double mv = Double.NEGATIVE_INFINITY;
+                    int code = 0;
+                    double a;
+                    if ((a = ReLU.relu(s00)) > mv) { mv = a; code = 0; }
+                    if ((a = ReLU.relu(s01)) > mv) { mv = a; code = 1; }
+                    if ((a = ReLU.relu(s10)) > mv) { mv = a; code = 2; }
+                    if ((a = ReLU.relu(s11)) > mv) { mv = a; code = 3; }
+                    y[o] = mv;
+                    arg[o++] = (byte) code;
+                    if (tracking) {
+                        if (fired == null) fired = new boolean[4 * y.length];
+                        int u = (f * 2 * outH + r0) * 2 * outW + c0;
+                        if (s00 > 0) fired[u] = true;
+                        if (s01 > 0) fired[u + 1] = true;
+                        if (s10 > 0) fired[u + 2 * outW] = true;
+                        if (s11 > 0) fired[u + 2 * outW + 1] = true;
+                    }
+                }
+            }
+        }
+        return y;
+    }
+
+    void startTracking() { tracking = true; fired = null; }
+
+    /** Fraction of units that never fired since startTracking(); stops tracking. */
+    double stopTracking() {
+        tracking = false;
+        if (fired == null) return Double.NaN;
+        int dead = 0;
+        for (boolean f : fired) if (!f) dead++;
+        double frac = dead / (double) fired.length;
+        fired = null;
+        return frac;
+    }
+
+    // Collects the conv-plane grads that survive pooling and ReLU, in the row-major order the
+    // unfused conv backward visits them. Every other position carries an exact zero, and adding
+    // those terms would not change any sum, so they are dropped. Returns the number of entries.
+    private int collectGrads(double[] dy, int[] pos, double[] val, int off, int[] start, int startOff) {
+        int convW = conv.outW, n = 0, plane = outH * outW;
+        for (int f = 0; f < outC; f++) {
+            start[startOff + f] = n;
+            for (int pi = 0; pi < outH; pi++) {
+                for (int di = 0; di < 2; di++) {
+                    int o = f * plane + pi * outW;
+                    for (int pj = 0; pj < outW; pj++, o++) {
+                        if ((arg[o] >> 1) != di) continue;
+                        // unfused: pool scatter into a zeroed map, then ReLU derivative of the max
+                        double g = (0.0 + dy[o]) * (y[o] > 0 ? 1.0 : 0.0);
+                        if (g == 0.0) continue;
+                        pos[off + n] = (2 * pi + di) * convW + 2 * pj + (arg[o] & 1);
+                        val[off + n++] = g;
+                    }
+                }
+            }
+        }
+        start[startOff + outC] = n;
+        return n;
+    }
+
+    @Override
+    public double[] backward(double[] dy, boolean propagate) {
+        if (batched) return backwardBatched(dy, propagate);
+        collectGrads(dy, gPos, gVal, 0, gStart, 0);
+        final int inC = conv.inC, inH = conv.inH, inW = conv.inW, kH = conv.kH, kW = conv.kW;
+        final int convW = conv.outW;
+        final double[] K = conv.K, dK = conv.dK;
+        if (propagate) java.util.Arrays.fill(dx, 0.0);
+        for (int f = 0; f < outC; f++) {
+            double db = 0.0;
+            for (int e = gStart[f]; e < gStart[f + 1]; e++) {
+                double g = gVal[e];
+                int i = gPos[e] / convW, j = gPos[e] % convW;
+                db += g;
+                for (int c = 0; c < inC; c++) {
+                    int kBase = (f * inC + c) * kH * kW;
+                    int xBase = c * inH * inW;
+                    for (int ki = 0; ki < kH; ki++) {
+                        for (int kj = 0; kj < kW; kj++) {
+                            int xi = xBase + (i + ki) * inW + j + kj;
+                            dK[kBase + ki * kW + kj] += x[xi] * g;
+                            if (propagate) dx[xi] += K[kBase + ki * kW + kj] * g;
+                        }
+                    }
+                }
+            }
+            conv.dB[f] += db;
+        }
+        return propagate ? dx : null;
+    }
+
+    private double[] backwardBatched(double[] dy, boolean propagate) {
+        if (pending == cap) {
+            cap = Math.max(8, cap * 2);
+            batchX = java.util.Arrays.copyOf(batchX, cap * x.length);
+            batchG = java.util.Arrays.copyOf(batchG, cap * y.length);
+            batchPos = java.util.Arrays.copyOf(batchPos, cap * y.length);
+            batchStart = java.util.Arrays.copyOf(batchStart, cap * (outC + 1));
+        }
+        int gOff = pending * y.length, sOff = pending * (outC + 1);
+        System.arraycopy(x, 0, batchX, pending * x.length, x.length);
+        collectGrads(dy, batchPos, batchG, gOff, batchStart, sOff);
+        pending++;
+
+        final int inC = conv.inC, inH = conv.inH, inW = conv.inW, kH = conv.kH, kW = conv.kW;
+        final int convW = conv.outW;
+        for (int f = 0; f < outC; f++) {
+            double db = 0.0;
+            for (int e = gOff + batchStart[sOff + f]; e < gOff + batchStart[sOff + f + 1]; e++) db += batchG[e];
+            conv.dB[f] += db;
+        }
+        if (!propagate) return null;
+        java.util.Arrays.fill(dx, 0.0);
+        for (int f = 0; f < outC; f++) {
+            for (int e = gOff + batchStart[sOff + f]; e < gOff + batchStart[sOff + f + 1]; e++) {
+                double g = batchG[e];
+                int i = batchPos[e] / convW, j = batchPos[e] % convW;
+                for (int c = 0; c < inC; c++) {
+                    int kBase = (f * inC + c) * kH * kW;
+                    int xBase = c * inH * inW;
+                    for (int ki = 0; ki < kH; ki++)
+                        for (int kj = 0; kj < kW; kj++)
+                            dx[xBase + (i + ki) * inW + j + kj] += conv.K[kBase + ki * kW + kj] * g;
+                }
+            }
+        }
+        return dx;
+    }
+
+    @Override
+    public void flushGrads() {
+        if (pending == 0) return;
+        // per-tap register reduction over (sample, surviving position), as in Conv2D.flushGrads()
+        final int inC = conv.inC, inH = conv.inH, inW = conv.inW, kH = conv.kH, kW = conv.kW;
+        final int convW = conv.outW, xLen = x.length, stride = outC + 1;
+        final double[] dK = conv.dK;
+        for (int f = 0; f < outC; f++) {
+            for (int c = 0; c < inC; c++) {
+                for (int ki = 0; ki < kH; ki++) {
+                    for (int kj = 0; kj < kW; kj++) {
+                        int k = ((f * inC + c) * kH + ki) * kW + kj;
+                        double acc = dK[k];
+                        for (int s = 0; s < pending; s++) {
+                            int xBase = s * xLen + c * inH * inW + ki * inW + kj;
+                            int gOff = s * y.length;
+                            int from = gOff + batchStart[s * stride + f], to = gOff + batchStart[s * stride + f + 1];
+                            for (int e = from; e < to; e++) {
+                                int p = batchPos[e];
+                                acc += batchX[xBase + (p / convW) * inW + p % convW] * batchG[e];
+                            }
+                        }
+                        dK[k] = acc;
+                    }
+                }
+            }
+        }
+        pending = 0;
+    }
+
+    @Override
+    public void setBatchedGrads(boolean batched) {
+        flushGrads();
+        this.batched = batched;
+    }
+
+    @Override public double[][] params() { return conv.params(); }
+    @Override public double[][] grads()  { return conv.grads(); }
+    @Override public int[][] shapes()    { return conv.shapes(); }
+}
@@ -0,0 +1,43 @@
+// =========================
+// Counter-based random numbers (stateless, SplitMix64 finalizer)
+// =========================
+/**
+ * Random bits as a pure function of a key, so any worker can derive the stream of a given
+ * (seed, epoch, sample) directly, without a shared Random and without depending on which thread
+ * or rank got there first. Same mixing as {@link java.util.SplittableRandom}.
+ */
+public final class CounterRng {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private CounterRng() {}
+
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Key of a sub-stream, e.g. key(seed, epoch, sample). */
+    public static long key(long seed, long a, long b) {
+        return mix(mix(mix(seed + GOLDEN) + a * GOLDEN) + b * GOLDEN);
+    }
+
+    /** The n-th uniform double in [0, 1) of the stream {@code key}. */
+    public static double uniform(long key, int n) {
+        return (mix(key + (n + 1) * GOLDEN) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Fills {@code bits} with n Bernoulli draws packed 64 per word: bit i is set with probability
+     * 1 - dropProb. Each 64-bit counter value yields two 32-bit uniforms.
+     */
+    public static void keepMask(long key, int n, double dropProb, long[] bits) {
+        long threshold = (long) (dropProb * 4294967296.0);   // drop when the 32-bit uniform is below
+        java.util.Arrays.fill(bits, 0, (n + 63) >>> 6, 0L);
+        for (int i = 0; i < n; i += 2) {
+            long r = mix(key + (i >>> 1) * GOLDEN);
+            if ((r >>> 32) >= threshold) bits[i >>> 6] |= 1L << i;
+            if (i + 1 < n && (r & 0xFFFFFFFFL) >= threshold) bits[(i + 1) >>> 6] |= 1L << (i + 1);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// =========================
+// accuracy_logs.csv writer
+// =========================
+public class CsvAccuracySink implements AccuracySink {
+    final BufferedWriter csv;
+
+    public CsvAccuracySink(String path, boolean append) throws IOException {
+        csv = new BufferedWriter(new FileWriter(path, append));
+        if (!append) csv.write("epoch,totalAcc,d0,d1,d2,d3,d4,d5,d6,d7,d8,d9\n");
+    }
+
+    @Override
+    public void accept(int epoch, double totalAcc, double[] perDigitAcc) throws IOException {
+        csv.write(epoch + "," + totalAcc);
+        for (int d = 0; d < 10; d++) csv.write("," + perDigitAcc[d]);
+        csv.write("\n");
+    }
+
+    @Override public void flush() throws IOException { csv.flush(); }
+    @Override public void close() throws IOException { csv.close(); }
+}
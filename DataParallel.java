@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// =========================
+// Data-parallel gradient synchronization for Trainer
+// =========================
+/**
+ * Each worker computes grads on its shard of every global batch; this class sums them across
+ * workers with a {@link RingAllReduce} and applies the result through the local optimizer. Because
+ * every worker applies the same reduced gradients in the same order, replicas stay identical.
+ * <p>
+ * With {@code staleness} 0 each step waits for its own reduction (synchronous SGD). With
+ * staleness S the reduction runs on a background thread and the worker keeps computing; the
+ * gradient applied at step t was computed on parameters at most S steps old.
+ */
+public class DataParallel implements AutoCloseable {
+    final RingAllReduce ring;
+    final int staleness;
+    final ExecutorService reducer;   // one thread: reductions must hit the ring in order
+    final ArrayDeque<Pending> inFlight = new ArrayDeque<>();
+    final ArrayDeque<double[]> spare = new ArrayDeque<>();
+
+    static class Pending {
+        final double[] flat; final int batchSize; final Future<?> done;
+        Pending(double[] flat, int batchSize, Future<?> done) { this.flat = flat; this.batchSize = batchSize; this.done = done; }
+    }
+
+    public DataParallel(RingAllReduce ring, int staleness) {
+        this.ring = ring;
+        this.staleness = Math.max(0, staleness);
+        this.reducer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "allreduce-" + ring.rank());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int rank() { return ring.rank(); }
+    public int world() { return ring.world(); }
+
+    /** Snapshots the local grads, starts their reduction and applies whatever is due. */
+    public void step(Sequential model, Optimizer optimizer, int globalBatchSize) throws IOException {
+        List<double[]> gs = model.grads();
+        double[] flat = spare.isEmpty() ? new double[optimizer.total] : spare.poll();
+        for (int i = 0, off = 0; i < gs.size(); off += gs.get(i).length, i++)
+            System.arraycopy(gs.get(i), 0, flat, off, gs.get(i).length);
+        inFlight.add(new Pending(flat, globalBatchSize, reducer.submit(() -> { ring.allReduce(flat); return null; })));
+        while (inFlight.size() > staleness) apply(inFlight.poll(), model, optimizer);
+    }
+
+    /** Applies every outstanding reduction; call before eval/checkpoints so all replicas match. */
+    public void drain(Sequential model, Optimizer optimizer) throws IOException {
+        while (!inFlight.isEmpty()) apply(inFlight.poll(), model, optimizer);
+    }
+
+    /**
+     * Rank 0's value on every rank; the other ranks' arguments are ignored. Used for the leader's
+     * test accuracy, so lr schedules and early stopping make the same decision everywhere.
+     */
+    public double broadcast(double leaderValue) throws IOException {
+        double[] v = {rank() == 0 ? leaderValue : 0.0};
+        await(reducer.submit(() -> { ring.allReduce(v); return null; }));
+        return v[0];
+    }
+
+    /** True on every rank if any rank passes true (used to stop all workers together). */
+    public boolean anyStop(boolean local) throws IOException {
+        double[] flag = {local ? 1 : 0};
+        await(reducer.submit(() -> { ring.allReduce(flag); return null; }));
+        return flag[0] > 0;
+    }
+
+    private void apply(Pending p, Sequential model, Optimizer optimizer) throws IOException {
+        await(p.done);
+        List<double[]> gs = model.grads();
+        for (int i = 0, off = 0; i < gs.size(); off += gs.get(i).length, i++)
+            System.arraycopy(p.flat, off, gs.get(i), 0, gs.get(i).length);
+        optimizer.step(p.batchSize);
+        spare.add(p.flat);
+    }
+
+    private static void await(Future<?> f) throws IOException {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during all-reduce", e);
+        } catch (ExecutionException e) {
+            throw new IOException("All-reduce failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reducer.shutdownNow();
+        ring.close();
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.Random;
+
+// =========================
+// Fully connected layer
+// =========================
+/**
+ * Forward and backward walk W row by row (contiguous, vectorizable) and, with {@code sparse} on,
+ * only visit the rows of nonzero inputs and the columns of nonzero output grads. After ReLU,
+ * max-pool and dropout most of those are exactly zero. Skipping them drops terms that are +/-0, so
+ * results match the full loops.
+ * <p>
+ * With batched grads on, backward stashes x and dy per sample and {@link #flushGrads()} computes
+ * dW += X^T * D once per batch, blocked over dW rows. dW is then streamed through memory once per
+ * batch rather than once per sample; per-element summation order is unchanged.
+ */
+public class Dense implements Layer {
+    // below this density the index lists pay for their indirection
+    static final double SPARSE_MAX_DENSITY = 0.75;
+
+    /** Forward row accumulation for one fixed shape; see {@link KernelGen}. */
+    interface Kernel { void forward(double[] x, int[] rows, int n, double[] W, double[] y); }
+
+    final int in, out;
+    Kernel kernel;      // shape-specialized forward, or null for the generic loop
+
+    // Parameters: W is [in][out] row-major (same indexing as the old w1[i][j]), b is [out]
+    final double[] W, b;
+    final double[] dW, db;
+
+    boolean sparse = true;
+    // Set by Sequential when the input comes out of ReLU (possibly via max-pool/dropout): a zero
+    // input then always gets a zero upstream gradient, so its dx can be left at 0.
+    boolean skipZeroInputGrad = false;
+
+    static final int ROW_BLOCK = 16;    // dW rows per cache block in flushGrads()
+
+    boolean batched = false;
+    double[] batchX = new double[0];    // [cap][in] stashed inputs
+    double[] batchD = new double[0];    // [cap][out] stashed output grads
+    int cap = 0, pending = 0;
+
+    double[] x;         // input of the last forward call
+    final double[] y, dx;
+    final int[] nzIn, nzOut;   // nonzero input rows / nonzero output-grad columns
+    int nnzIn;
+
+    public Dense(int in, int out, Random rnd) {
+        this(in, out, new double[in * out], new double[out]);
+        // He init
+        double scale = Math.sqrt(2.0 / in);
+        for (int i = 0; i < W.length; i++) W[i] = rnd.nextGaussian() * scale;
+    }
+
+    private Dense(int in, int out, double[] W, double[] b) {
+        this.in = in; this.out = out;
+        this.W = W; this.b = b;
+        dW = new double[W.length]; db = new double[out];
+        y = new double[out]; dx = new double[in];
+        nzIn = new int[in]; nzOut = new int[out];
+        kernel = GeneratedKernels.dense(in, out);
+    }
+
+    @Override
+    public Layer replica(Random rnd) {
+        Dense d = new Dense(in, out, W, b);
+        d.sparse = sparse;
+        d.skipZeroInputGrad = skipZeroInputGrad;
+        d.batched = batched;
+        return d;
+    }
+
+    @Override
+    public double[] forward(double[] input, boolean training) {
+        x = input;
+        nnzIn = 0;
+        for (int i = 0; i < in; i++) if (x[i] != 0.0) nzIn[nnzIn++] = i;
+        boolean useIdx = sparse && nnzIn < SPARSE_MAX_DENSITY * in;
+
+        System.arraycopy(b, 0, y, 0, out);
+        int rows = useIdx ? nnzIn : in;
+        if (kernel != null) {
+            kernel.forward(x, useIdx ? nzIn : null, rows, W, y);
+            return y;
+        }
+        for (int k = 0; k < rows; k++) {
+            int i = useIdx ? nzIn[k] : k;
+            double xi = x[i];
+            int base = i * out;
+            for (int j = 0; j < out; j++) y[j] += xi * W[base + j];
+        }
+        return y;
+    }
+
+    @Override
+    public double[] backward(double[] dy, boolean propagate) {
+        int nnzOut = 0;
+        for (int j = 0; j < out; j++) {
+            if (dy[j] != 0.0) { nzOut[nnzOut++] = j; db[j] += dy[j]; }
+        }
+        boolean rowIdx = sparse && nnzIn < SPARSE_MAX_DENSITY * in;
+        boolean colIdx = sparse && nnzOut < SPARSE_MAX_DENSITY * out;
+        if (nnzOut == 0) {
+            if (propagate) java.util.Arrays.fill(dx, 0.0);
+            return propagate ? dx : null;
+        }
+
+        if (batched) stash(dy);
+        else accumulateOuter(dy, rowIdx, colIdx, nnzOut);
+        if (!propagate) return null;
+
+        // dx = W dy over nonzero columns; rows with zero input skipped when upstream is ReLU
+        boolean skipRows = sparse && skipZeroInputGrad && rowIdx;
+        if (skipRows) java.util.Arrays.fill(dx, 0.0);
+        int dxRows = skipRows ? nnzIn : in;
+        for (int k = 0; k < dxRows; k++) {
+            int i = skipRows ? nzIn[k] : k;
+            int base = i * out;
+            double s = 0.0;
+            if (colIdx) for (int c = 0; c < nnzOut; c++) { int j = nzOut[c]; s += W[base + j] * dy[j]; }
+            else for (int j = 0; j < out; j++) s += W[base + j] * dy[j];
+            dx[i] = s;
+        }
+        return dx;
+    }
+
+    // per-sample rank-1 update: dW += x (outer) dy, nonzero rows x nonzero columns only
+    private void accumulateOuter(double[] dy, boolean rowIdx, boolean colIdx, int nnzOut) {
+        int rows = rowIdx ? nnzIn : in;
+        for (int k = 0; k < rows; k++) {
+            int i = rowIdx ? nzIn[k] : k;
+            double xi = x[i];
+            if (xi == 0.0) continue;
+            int base = i * out;
+            if (colIdx) for (int c = 0; c < nnzOut; c++) { int j = nzOut[c]; dW[base + j] += xi * dy[j]; }
+            else for (int j = 0; j < out; j++) dW[base + j] += xi * dy[j];
+        }
+    }
+
+    private void stash(double[] dy) {
+        if (pending == cap) {
+            cap = Math.max(8, cap * 2);
+            batchX = java.util.Arrays.copyOf(batchX, cap * in);
+            batchD = java.util.Arrays.copyOf(batchD, cap * out);
+        }
+        System.arraycopy(x, 0, batchX, pending * in, in);
+        System.arraycopy(dy, 0, batchD, pending * out, out);
+        pending++;
+    }
+
+    @Override
+    public void flushGrads() {
+        if (pending == 0) return;
+        // dW += X^T D, blocked over dW rows so each block stays cache-resident for the whole batch.
+        // Each element still gets its adds in sample order: bit-identical to per-sample updates.
+        for (int i0 = 0; i0 < in; i0 += ROW_BLOCK) {
+            int i1 = Math.min(i0 + ROW_BLOCK, in);
+            for (int s = 0; s < pending; s++) {
+                int xRow = s * in, dRow = s * out;
+                for (int i = i0; i < i1; i++) {
+                    double xv = batchX[xRow + i];
+                    if (xv == 0.0) continue;
+                    int base = i * out;
+                    for (int j = 0; j < out; j++) dW[base + j] += xv * batchD[dRow + j];
+                }
+            }
+        }
+        pending = 0;
+    }
+
+    @Override
+    public void setBatchedGrads(boolean batched) {
+        flushGrads();
+        this.batched = batched;
+    }
+
+    @Override public double[][] params() { return new double[][]{W, b}; }
+    @Override public double[][] grads()  { return new double[][]{dW, db}; }
+    @Override public int[][] shapes()    { return new int[][]{{in, out}, {out}}; }
+}
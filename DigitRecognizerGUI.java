@@ -3,18 +3,15 @@ import javax.swing.BorderFactory;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Random;
 
 public class DigitRecognizerGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
     private BufferedImage highResCanvas;
     private int brushSize = 20;
 
-    // CNN + Dense weights
-    private DigitRecognizer.ConvBlock conv;
-    private double[][] w1, w2, w3;
-    private double[] b1, b2, b3;
+    // CNN + Dense model
+    private ModelRegistry registry;   // newest weights.bin/weights.dat in the working dir, reloaded when retrained
+    private Ensemble ensemble;   // -Dnn.ensemble=a.dat,b.dat,...: averaged members + shifted copies
 
     private JLabel predictionLabel;
 
@@ -77,29 +74,28 @@ public class DigitRecognizerGUI extends JFrame {
             }
         });
 
-        // Load weights produced by the NEW CNN trainer:
+        // Load weights produced by the CNN trainer:
         // Order is: convK, convB, w1, b1, w2, b2, w3, b3
+        // The registry keeps watching, so a finished training run shows up without a restart.
         try {
-            Object[] weights = DigitRecognizer.loadWeights("weights.dat");
-            double[][][] convK = (double[][][]) weights[0];
-            double[] convB      = (double[])     weights[1];
-            w1 = (double[][]) weights[2]; b1 = (double[]) weights[3];
-            w2 = (double[][]) weights[4]; b2 = (double[]) weights[5];
-            w3 = (double[][]) weights[6]; b3 = (double[]) weights[7];
-
-            // Build a ConvBlock and inject loaded weights
-            conv = new DigitRecognizer.ConvBlock(convK.length, new Random(0));
-            // Assign loaded kernels/biases
-            conv.K = convK;   // package-visible in the same (default) package
-            conv.B = convB;
+            registry = new ModelRegistry(java.nio.file.Paths.get("."), "weights.{bin,dat}").start();
+            String members = System.getProperty("nn.ensemble");
+            if (members != null)
+                ensemble = Ensemble.load(java.util.Arrays.asList(members.split(",")), Runtime.getRuntime().availableProcessors());
 
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this,
-                "Failed to load weights.dat. Train your CNN model first!\n" + ex.getMessage(),
+                "Failed to load the model!\n" + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
             System.exit(1);
         }
+        if (ensemble == null && registry.current() == null)
+            JOptionPane.showMessageDialog(this,
+                "No usable weights.dat or weights.bin yet. Predictions start as soon as training writes one.\n"
+                    + registry.metrics(),
+                "Waiting for weights",
+                JOptionPane.WARNING_MESSAGE);
 
         pack();
         setResizable(false);
@@ -125,18 +121,15 @@ public class DigitRecognizerGUI extends JFrame {
         double[] input = getInputFromCanvas(); // 28x28 normalized to [0,1]
 
         // --- CNN forward (no dropout) ---
-        double[] convFeat = conv.forward(input);
-        DigitRecognizer.DenseCache cache = DigitRecognizer.denseForward(
-                convFeat, w1, b1, w2, b2, w3, b3,
-                false,     // training = false
-                0.0,       // dropoutRate = 0
-                new Random(0));
-
-        double[] probs = cache.out; // already softmaxed
-
-        Integer[] idx = new Integer[probs.length];
-        for (int i = 0; i < probs.length; i++) idx[i] = i;
-        Arrays.sort(idx, Comparator.comparingDouble(i -> -probs[i]));
+        ModelRegistry.Snapshot live = registry.current();
+        if (ensemble == null && live == null) {
+            SwingUtilities.invokeLater(() -> predictionLabel.setText("<html>Waiting for weights.dat / weights.bin ...</html>"));
+            return;
+        }
+        double[] probs = ensemble != null ? ensemble.predict(input).probs : live.forward(input); // already softmaxed
+
+        int[] idx = new int[probs.length];
+        Predictor.topK(probs, probs.length, idx, 0, new double[probs.length]);
 
         StringBuilder sb = new StringBuilder("<html>All Predictions (most to least probable):<br><br>");
         for (int rank = 0; rank < probs.length; rank++) {
@@ -0,0 +1,31 @@
+// =========================
+// Knowledge distillation targets
+// =========================
+/**
+ * Turns a trained teacher model into soft training targets for a smaller student. With
+ * {@code Trainer.distill} set, the trainer backprops
+ * {@code alpha * softmax(teacherLogits / T) + (1 - alpha) * oneHot(label)} instead of the bare label.
+ * The teacher only exposes probabilities, but softmax(z / T) is p^(1 / T) renormalized, so the
+ * temperature is applied exactly. The student sees the blended target at T = 1. The teacher runs
+ * on the same (possibly augmented) image the student trains on. Not thread-safe.
+ */
+public class Distillation {
+    final Sequential teacher;
+    double temperature = 4.0;   // > 1 spreads the teacher's mass onto the classes it finds similar
+    double alpha = 0.7;         // weight of the teacher's distribution vs the hard label
+
+    private double[] logT = new double[0], target = new double[0];
+
+    public Distillation(Sequential teacher) { this.teacher = teacher; }
+
+    /** Blended target for one sample; valid until the next call. */
+    public double[] target(double[] x, int label) {
+        double[] p = teacher.forward(x, false);
+        if (target.length != p.length) { logT = new double[p.length]; target = new double[p.length]; }
+        for (int k = 0; k < p.length; k++) logT[k] = Math.log(Math.max(p[k], 1e-300)) / temperature;
+        SoftmaxCrossEntropy.softmax(logT, target);
+        for (int k = 0; k < p.length; k++) target[k] *= alpha;
+        target[label] += 1.0 - alpha;
+        return target;
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// =========================
+// Multi-JVM data-parallel training of the DigitRecognizer model
+// =========================
+/**
+ * Usage:
+ *   launch N [worker options]   start N worker JVMs on this machine (ranks 0..N-1) and wait
+ *   worker --rank R --world N   one worker; normally started by launch
+ *   bench [--synthetic S]       scaling benchmark for 1, 2 and 4 workers
+ *
+ * Worker options: --port P (base port, rank r listens on P + r), --staleness S (0 = synchronous),
+ * --train/--test CSV paths or --synthetic S, --epochs E, --batch B, --lr LR, --report FILE.
+ * Every worker builds the model from the same seed, so replicas start identical; rank 0 evaluates,
+ * logs and saves weights.dat.
+ */
+public class DistributedDigitRecognizer {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) { System.err.println("usage: launch N [options] | worker [options] | bench [options]"); System.exit(2); }
+        switch (args[0]) {
+            case "launch": System.exit(launch(Integer.parseInt(args[1]), slice(args, 2), null)); break;
+            case "worker": worker(RunConfig.parse(slice(args, 1))); break;
+            case "bench": bench(RunConfig.parse(slice(args, 1))); break;
+            default: System.err.println("Unknown mode: " + args[0]); System.exit(2);
+        }
+    }
+
+    // ----- Launcher: one JVM per rank on this box -----
+    static int launch(int world, String[] options, File outputDir) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String cp = System.getProperty("java.class.path");
+        List<Process> procs = new ArrayList<>();
+        for (int rank = 0; rank < world; rank++) {
+            List<String> cmd = new ArrayList<>(List.of(java, "-Djava.awt.headless=true", "-cp", cp,
+                    "DistributedDigitRecognizer", "worker", "--rank", Integer.toString(rank), "--world", Integer.toString(world)));
+            cmd.addAll(List.of(options));
+            ProcessBuilder pb = new ProcessBuilder(cmd);
+            if (outputDir != null) {
+                pb.redirectErrorStream(true);
+                pb.redirectOutput(new File(outputDir, "worker" + rank + ".log"));
+            } else {
+                pb.inheritIO();
+            }
+            procs.add(pb.start());
+        }
+        int worst = 0;
+        for (Process p : procs) worst = Math.max(worst, p.waitFor());
+        return worst;
+    }
+
+    // ----- Worker -----
+    static void worker(Map<String, String> opt) throws Exception {
+        int rank = Integer.parseInt(opt.getOrDefault("rank", "0"));
+        int world = Integer.parseInt(opt.getOrDefault("world", "1"));
+        int port = Integer.parseInt(opt.getOrDefault("port", "29500"));
+        int staleness = Integer.parseInt(opt.getOrDefault("staleness", "0"));
+
+        Random rand = new Random(42);   // same seed on every rank -> identical initial replicas
+        Sequential model = DigitRecognizer.buildModel(16, 256, 128, 0.20, rand);
+
+        List<double[]> trainInputs = new ArrayList<>(), testInputs = new ArrayList<>();
+        List<Integer> trainLabels = new ArrayList<>(), testLabels = new ArrayList<>();
+        if (opt.containsKey("synthetic")) {
+            SyntheticDigits.generate(Integer.parseInt(opt.get("synthetic")), 1, trainInputs, trainLabels);
+        } else {
+            trainInputs = DigitRecognizer.loadInputs(opt.get("train"), 784);
+            trainLabels = DigitRecognizer.loadLabels(opt.get("train"), 784);
+            if (opt.containsKey("test")) {
+                testInputs = DigitRecognizer.loadInputs(opt.get("test"), 784);
+                testLabels = DigitRecognizer.loadLabels(opt.get("test"), 784);
+            }
+        }
+
+        try (RingAllReduce ring = new RingAllReduce(rank, world, "127.0.0.1", port)) {
+            Trainer trainer = new Trainer(model, new Random(42));   // same seed: shared order, masks per global sample
+            trainer.dataParallel = new DataParallel(ring, staleness);
+            trainer.optimizer = new Sgd(Double.parseDouble(opt.getOrDefault("lr", "0.01")), 0.0001, 0.9, true);
+            trainer.batchSize = Integer.parseInt(opt.getOrDefault("batch", "128"));
+            trainer.maxEpochs = Integer.parseInt(opt.getOrDefault("epochs", "10"));
+            trainer.headless = true;
+
+            long t0 = System.nanoTime();
+            trainer.train(trainInputs, trainLabels, testInputs, testLabels);
+            double secs = (System.nanoTime() - t0) / 1e9;
+            trainer.dataParallel.close();
+
+            if (rank == 0) {
+                double sps = trainInputs.size() * (double) trainer.maxEpochs / secs;
+                System.out.printf("world=%d staleness=%d: %.1f samples/s (%.1f s)%n", world, staleness, sps, secs);
+                if (opt.containsKey("report")) {
+                    try (FileWriter w = new FileWriter(opt.get("report"))) { w.write(Double.toString(sps)); }
+                }
+                if (!opt.containsKey("synthetic")) model.save("weights.dat");
+            }
+        }
+    }
+
+    // ----- Scaling benchmark -----
+    static void bench(Map<String, String> opt) throws Exception {
+        String synthetic = opt.getOrDefault("synthetic", "4096");
+        String staleness = opt.getOrDefault("staleness", "0");
+        File dir = new File(System.getProperty("java.io.tmpdir"), "nn-bench-" + System.nanoTime());
+        if (!dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        double base = 0;
+        System.out.printf("%-8s %14s %9s %11s%n", "workers", "samples/s", "speedup", "efficiency");
+        for (int world : new int[]{1, 2, 4}) {
+            File report = new File(dir, "report" + world);
+            int code = launch(world, new String[]{"--synthetic", synthetic, "--epochs", "1",
+                    "--staleness", staleness, "--port", Integer.toString(29600 + 10 * world),
+                    "--report", report.getPath()}, dir);
+            if (code != 0) { System.out.println(world + " workers failed, see " + dir); continue; }
+            double sps;
+            try (BufferedReader r = new BufferedReader(new FileReader(report))) { sps = Double.parseDouble(r.readLine()); }
+            if (world == 1) base = sps;
+            System.out.printf("%-8d %14.1f %8.2fx %10.1f%%%n", world, sps, sps / base, 100 * sps / base / world);
+        }
+    }
+
+    // ----- Args -----
+    static String[] slice(String[] a, int from) {
+        String[] r = new String[Math.max(0, a.length - from)];
+        System.arraycopy(a, Math.min(from, a.length), r, 0, r.length);
+        return r;
+    }
+}
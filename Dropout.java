@@ -0,0 +1,54 @@
+import java.util.Random;
+
+// =========================
+// Inverted dropout (identity at inference time)
+// =========================
+/**
+ * The keep mask is a bitset drawn in bulk from a {@link CounterRng} key. Trainers key each sample
+ * through {@link Sequential#setSample}, so a mask depends only on (seed, epoch, sample, layer) and
+ * not on thread or worker count; without a key the layer falls back to one draw from its own
+ * Random per forward call.
+ */
+public class Dropout implements Layer {
+    final double rate;
+    final Random rnd;
+
+    long key;
+    boolean keyed;      // key set for the next forward call
+    long[] keep = new long[0];
+    boolean active;     // whether the last forward call actually dropped units
+    double[] y, dx;
+
+    public Dropout(double rate, Random rnd) {
+        this.rate = rate;
+        this.rnd = rnd;
+    }
+
+    @Override
+    public Layer replica(Random rnd) { return new Dropout(rate, rnd); }
+
+    void setKey(long key) {
+        this.key = key;
+        keyed = true;
+    }
+
+    @Override
+    public double[] forward(double[] x, boolean training) {
+        active = training && rate > 0;
+        if (!active) return x;
+        if (y == null || y.length != x.length) {
+            y = new double[x.length]; dx = new double[x.length]; keep = new long[(x.length + 63) >>> 6];
+        }
+        CounterRng.keepMask(keyed ? key : rnd.nextLong(), x.length, rate, keep);
+        keyed = false;
+        for (int i = 0; i < x.length; i++) y[i] = (keep[i >>> 6] & (1L << i)) != 0 ? x[i] / (1.0 - rate) : 0.0;
+        return y;
+    }
+
+    @Override
+    public double[] backward(double[] dy, boolean propagate) {
+        if (!propagate || !active) return propagate ? dy : null;
+        for (int i = 0; i < dy.length; i++) dx[i] = (keep[i >>> 6] & (1L << i)) != 0 ? dy[i] / (1.0 - rate) : 0.0;
+        return dx;
+    }
+}
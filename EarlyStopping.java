@@ -0,0 +1,70 @@
+import java.util.List;
+
+// =========================
+// Early stopping + divergence detection
+// =========================
+/**
+ * Watches the per-epoch test accuracy and mean training loss. A run is stopped when accuracy has not
+ * improved for {@code patience} epochs, when the loss goes NaN/infinite, or when accuracy has sat at
+ * chance level (within {@code chanceMargin} of 1/numClasses) for {@code chanceEpochs} epochs in a row.
+ * With {@code restoreBest} set, the parameters from the best epoch are copied back on stop.
+ */
+public class EarlyStopping {
+    final int patience;
+    double minDelta = 1e-4;
+    int chanceEpochs = 3;
+    double chanceMargin = 0.02;
+    boolean restoreBest = true;
+
+    double bestAcc = Double.NEGATIVE_INFINITY;
+    int bestEpoch = 0;
+    int badEpochs = 0, chanceRun = 0;
+    double[][] bestParams;
+
+    public EarlyStopping(int patience) { this.patience = patience; }
+
+    /** Returns why training should stop after this epoch, or null to keep going. */
+    public String check(int epoch, double meanLoss, double acc, int numClasses, List<double[]> params) {
+        if (Double.isNaN(meanLoss) || Double.isInfinite(meanLoss)) return "diverged: training loss is " + meanLoss;
+        if (Double.isNaN(acc)) return null; // no test set, nothing to judge
+
+        if (Math.abs(acc - 1.0 / numClasses) <= chanceMargin) {
+            if (++chanceRun >= chanceEpochs)
+                return String.format("diverged: accuracy stuck at chance (%.4f) for %d epochs", acc, chanceRun);
+        } else {
+            chanceRun = 0;
+        }
+
+        if (acc > bestAcc + minDelta) {
+            bestAcc = acc; bestEpoch = epoch; badEpochs = 0;
+            if (restoreBest) snapshot(params);
+            return null;
+        }
+        if (++badEpochs >= patience)
+            return String.format("no improvement for %d epochs (best %.2f%% at epoch %d)", badEpochs, bestAcc * 100, bestEpoch);
+        return null;
+    }
+
+    /** Counters for checkpoints; bestParams is saved next to them. */
+    double[] state() { return new double[]{bestAcc, bestEpoch, badEpochs, chanceRun}; }
+
+    void restoreState(double[] s, double[][] best) {
+        if (s.length != 4) return;
+        bestAcc = s[0]; bestEpoch = (int) s[1]; badEpochs = (int) s[2]; chanceRun = (int) s[3];
+        bestParams = best;
+    }
+
+    void restore(List<double[]> params) {
+        if (!restoreBest || bestParams == null) return;
+        for (int i = 0; i < bestParams.length; i++) System.arraycopy(bestParams[i], 0, params.get(i), 0, bestParams[i].length);
+    }
+
+    private void snapshot(List<double[]> params) {
+        if (bestParams == null) bestParams = new double[params.size()][];
+        for (int i = 0; i < bestParams.length; i++) {
+            double[] p = params.get(i);
+            if (bestParams[i] == null) bestParams[i] = new double[p.length];
+            System.arraycopy(p, 0, bestParams[i], 0, p.length);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// =========================
+// Model ensemble with test-time augmentation and early exit
+// =========================
+/**
+ * Averages the softmax outputs of several trained models over a few pixel-shifted copies of the
+ * input (test-time augmentation). The shifted copies are built once per image and shared by every
+ * member. Each member runs as one task that pushes all of its variants through its model back to
+ * back, and the member tasks run in parallel.
+ * <p>
+ * Two stages per image. First the leading {@code firstStage} members score the unshifted input.
+ * If they all pick the same class with at least {@code agreeConfidence}, that average is the
+ * answer. Otherwise the remaining members and all shifted variants run as well. Easy digits
+ * therefore cost about one model's latency, and only ambiguous ones pay for the full ensemble.
+ * Not thread-safe: the members and the variant buffers are reused across calls.
+ */
+public class Ensemble implements AutoCloseable {
+    /** Mean probabilities over every (member, variant) pair that ran. */
+    public static final class Prediction {
+        public int label;
+        public double[] probs;
+        public int forwards;      // model passes spent on this image
+        public boolean early;     // answered by the first stage
+    }
+
+    static final int SIDE = 28, PIXELS = SIDE * SIDE;
+    static final int[][] SHIFTS = {{0, 0}, {-1, 0}, {1, 0}, {0, -1}, {0, 1}};   // {dy, dx}, identity first
+
+    final Sequential[] members;
+    final ExecutorService pool;    // null when single-threaded
+    boolean tta = true;
+    int firstStage = 2;            // members in the first stage; 0 always runs everything
+    double agreeConfidence = 0.95;
+
+    private final double[][] variants = new double[SHIFTS.length][PIXELS];
+    private final double[][] sums;  // per member, summed over its variants
+    private final int[] ran;        // per member, variants run
+
+    public Ensemble(List<Sequential> members, int threads) {
+        this.members = members.toArray(new Sequential[0]);
+        this.sums = new double[this.members.length][];
+        this.ran = new int[this.members.length];
+        threads = Math.max(1, Math.min(threads, this.members.length));
+        pool = threads == 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+            Thread th = new Thread(r, "ensemble-worker");
+            th.setDaemon(true);
+            return th;
+        });
+    }
+
+    /** Loads every file with {@link DigitRecognizer#loadModel}. */
+    public static Ensemble load(List<String> weights, int threads) throws java.io.IOException {
+        List<Sequential> ms = new ArrayList<>();
+        for (String w : weights) ms.add(DigitRecognizer.loadModel(w));
+        return new Ensemble(ms, threads);
+    }
+
+    public Prediction predict(double[] x) {
+        int nv = tta ? SHIFTS.length : 1;
+        System.arraycopy(x, 0, variants[0], 0, PIXELS);
+        for (int v = 1; v < nv; v++) shift(x, SHIFTS[v][0], SHIFTS[v][1], variants[v]);
+        Arrays.fill(ran, 0);
+
+        Prediction p = new Prediction();
+        int first = Math.min(firstStage, members.length);
+        boolean staged = first > 0 && (first < members.length || nv > 1);
+        if (staged) {
+            run(first, 1);
+            p.early = agree(first);
+        }
+        if (!p.early) run(members.length, nv);
+
+        int n = 0;
+        for (int m = 0; m < members.length; m++) {
+            if (ran[m] == 0) continue;
+            if (p.probs == null) p.probs = new double[sums[m].length];
+            for (int c = 0; c < p.probs.length; c++) p.probs[c] += sums[m][c];
+            n += ran[m];
+        }
+        for (int c = 0; c < p.probs.length; c++) p.probs[c] /= n;
+        for (int c = 1; c < p.probs.length; c++) if (p.probs[c] > p.probs[p.label]) p.label = c;
+        p.forwards = n;
+        return p;
+    }
+
+    // true when members [0, first) all ran variant 0 and agree with enough confidence
+    private boolean agree(int first) {
+        int label = -1;
+        for (int m = 0; m < first; m++) {
+            double[] s = sums[m];
+            int best = 0;
+            for (int c = 1; c < s.length; c++) if (s[c] > s[best]) best = c;
+            if (s[best] < agreeConfidence || (label >= 0 && best != label)) return false;
+            label = best;
+        }
+        return true;
+    }
+
+    // members [0, to) each score their variants [ran[m], nv), one task per member
+    private void run(int to, int nv) {
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (int m = 0; m < to; m++) {
+            if (ran[m] >= nv) continue;
+            final int member = m, vFrom = ran[m];
+            jobs.add(() -> { score(member, vFrom, nv); return null; });
+        }
+        if (pool == null || jobs.size() <= 1) {
+            for (Callable<Void> j : jobs) {
+                try { j.call(); } catch (Exception e) { throw new IllegalStateException("Ensemble member failed", e); }
+            }
+            return;
+        }
+        try {
+            for (Future<Void> f : pool.invokeAll(jobs)) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scoring", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ensemble member failed", e.getCause());
+        }
+    }
+
+    private void score(int m, int vFrom, int vTo) {
+        for (int v = vFrom; v < vTo; v++) {
+            double[] probs = members[m].forward(variants[v], false);   // the head's buffer, add it up right away
+            if (sums[m] == null) sums[m] = new double[probs.length];
+            if (ran[m] == 0) Arrays.fill(sums[m], 0.0);
+            for (int c = 0; c < probs.length; c++) sums[m][c] += probs[c];
+            ran[m]++;
+        }
+    }
+
+    // out(i, j) = x(i - dy, j - dx), zero where that falls outside the image
+    static void shift(double[] x, int dy, int dx, double[] out) {
+        for (int i = 0; i < SIDE; i++) {
+            int si = i - dy;
+            for (int j = 0; j < SIDE; j++) {
+                int sj = j - dx;
+                out[i * SIDE + j] = si >= 0 && si < SIDE && sj >= 0 && sj < SIDE ? x[si * SIDE + sj] : 0.0;
+            }
+        }
+    }
+
+    @Override
+    public void close() { if (pool != null) pool.shutdownNow(); }
+
+    // =========================
+    // Latency / accuracy report (run: java Ensemble --test FILE.csv --weights a.dat,b.dat,c.dat [--threads N] [--limit N] [--confidence C])
+    // =========================
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = RunConfig.parse(args);
+        String test = opt.get("test");
+        if (test == null) { System.err.println("usage: Ensemble --test FILE.csv [--weights a.dat,b.dat,...] [--threads N] [--limit N] [--confidence C]"); System.exit(2); }
+        List<String> weights = Arrays.asList(opt.getOrDefault("weights", "weights.dat").split(","));
+        int threads = Integer.parseInt(opt.getOrDefault("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        double confidence = Double.parseDouble(opt.getOrDefault("confidence", "0.95"));
+        List<double[]> xs = DigitRecognizer.loadInputs(test, PIXELS);
+        List<Integer> ys = DigitRecognizer.loadLabels(test, PIXELS);
+        int limit = Math.min(xs.size(), Integer.parseInt(opt.getOrDefault("limit", Integer.toString(xs.size()))));
+
+        List<Sequential> models = new ArrayList<>();
+        for (String w : weights) models.add(DigitRecognizer.loadModel(w));
+        System.out.printf("%d members, %d test images, %d threads%n", models.size(), limit, threads);
+        System.out.println("config                        accuracy  mean ms   p50 ms   p99 ms  passes/img  early");
+        try (Ensemble single = new Ensemble(models.subList(0, 1), 1);
+             Ensemble all = new Ensemble(models, threads)) {
+            single.tta = false;
+            single.firstStage = 0;
+            report("single model", single, xs, ys, limit);
+            all.tta = false;
+            all.firstStage = 0;
+            report("ensemble", all, xs, ys, limit);
+            all.tta = true;
+            report("ensemble + TTA", all, xs, ys, limit);
+            all.firstStage = Math.min(2, models.size());
+            all.agreeConfidence = confidence;
+            report(String.format(Locale.ROOT, "ensemble + TTA, exit @ %.2f", confidence), all, xs, ys, limit);
+        }
+    }
+
+    private static void report(String name, Ensemble e, List<double[]> xs, List<Integer> ys, int limit) {
+        for (int i = 0; i < Math.min(limit, 200); i++) e.predict(xs.get(i));   // JIT warm-up
+        long[] nanos = new long[limit];
+        long passes = 0;
+        int correct = 0, early = 0;
+        for (int i = 0; i < limit; i++) {
+            long t0 = System.nanoTime();
+            Prediction p = e.predict(xs.get(i));
+            nanos[i] = System.nanoTime() - t0;
+            if (p.label == ys.get(i)) correct++;
+            if (p.early) early++;
+            passes += p.forwards;
+        }
+        long sum = 0;
+        for (long t : nanos) sum += t;
+        Arrays.sort(nanos);
+        System.out.printf(Locale.ROOT, "%-28s  %7.2f%%  %7.3f  %7.3f  %7.3f  %10.2f  %4.0f%%%n", name,
+                100.0 * correct / limit, sum / 1e6 / limit, nanos[limit / 2] / 1e6, nanos[Math.min(limit - 1, (int) (limit * 0.99))] / 1e6,
+                passes / (double) limit, 100.0 * early / limit);
+    }
+}
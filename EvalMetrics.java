@@ -0,0 +1,175 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+// =========================
+// Confusion matrix, per-class precision/recall/F1 and calibration (ECE)
+// =========================
+/**
+ * Plain counters filled one prediction at a time. During parallel evaluation each worker owns one
+ * instance, and the workers' counters are {@link #merge merged} after they join, so the hot loop
+ * never shares or locks anything. Confidence is the top softmax probability. It is binned into
+ * {@code BINS} equal-width bins for the expected calibration error and a reliability diagram.
+ */
+public class EvalMetrics {
+    static final int BINS = 15;
+
+    final int classes;
+    final long[] confusion;               // [true * classes + predicted]
+    final long[] binCount = new long[BINS], binCorrect = new long[BINS];
+    final double[] binConf = new double[BINS];   // summed confidence per bin
+    long total, correct;
+
+    public EvalMetrics(int classes) {
+        this.classes = classes;
+        this.confusion = new long[classes * classes];
+    }
+
+    /** Records one sample from its softmax output; returns the predicted class. */
+    public int add(int label, double[] probs) {
+        int pred = 0;
+        for (int k = 1; k < probs.length; k++) if (probs[k] > probs[pred]) pred = k;   // same tie rule as predict
+        double conf = probs[pred];
+        int bin = Math.min(BINS - 1, Math.max(0, (int) (conf * BINS)));
+        confusion[label * classes + pred]++;
+        binCount[bin]++;
+        binConf[bin] += conf;
+        total++;
+        if (pred == label) { correct++; binCorrect[bin]++; }
+        return pred;
+    }
+
+    public void merge(EvalMetrics o) {
+        for (int i = 0; i < confusion.length; i++) confusion[i] += o.confusion[i];
+        for (int b = 0; b < BINS; b++) {
+            binCount[b] += o.binCount[b];
+            binCorrect[b] += o.binCorrect[b];
+            binConf[b] += o.binConf[b];
+        }
+        total += o.total;
+        correct += o.correct;
+    }
+
+    public long count(int label, int pred) { return confusion[label * classes + pred]; }
+
+    public long support(int c) {
+        long s = 0;
+        for (int p = 0; p < classes; p++) s += confusion[c * classes + p];
+        return s;
+    }
+
+    public long predicted(int c) {
+        long s = 0;
+        for (int t = 0; t < classes; t++) s += confusion[t * classes + c];
+        return s;
+    }
+
+    public double accuracy() { return total > 0 ? correct / (double) total : Double.NaN; }
+
+    // an empty denominator scores 0, like the per-digit recall in accuracy_logs.csv
+    public double precision(int c) { long p = predicted(c); return p > 0 ? count(c, c) / (double) p : 0.0; }
+    public double recall(int c) { long s = support(c); return s > 0 ? count(c, c) / (double) s : 0.0; }
+
+    public double f1(int c) {
+        double p = precision(c), r = recall(c);
+        return p + r > 0 ? 2 * p * r / (p + r) : 0.0;
+    }
+
+    public double macroF1() {
+        double s = 0.0;
+        for (int c = 0; c < classes; c++) s += f1(c);
+        return s / classes;
+    }
+
+    /** Expected calibration error: bin-size weighted mean |accuracy - confidence|. */
+    public double ece() {
+        if (total == 0) return Double.NaN;
+        double e = 0.0;
+        for (int b = 0; b < BINS; b++)
+            if (binCount[b] > 0) e += Math.abs(binCorrect[b] - binConf[b]) / total;
+        return e;
+    }
+
+    /** e.g. "macro F1 0.9712, ECE 0.0123, most confused 4->9 (37)". */
+    public String summary() {
+        int bt = -1, bp = -1;
+        for (int t = 0; t < classes; t++)
+            for (int p = 0; p < classes; p++)
+                if (t != p && count(t, p) > 0 && (bt < 0 || count(t, p) > count(bt, bp))) { bt = t; bp = p; }
+        return String.format(Locale.ROOT, "macro F1 %.4f, ECE %.4f, most confused %s", macroF1(), ece(),
+                bt < 0 ? "none" : bt + "->" + bp + " (" + count(bt, bp) + ")");
+    }
+
+    // =========================
+    // Per-epoch log
+    // =========================
+    /**
+     * Appends one epoch. CSV (default): a row per true class with support, precision, recall, F1
+     * and its confusion row (pred0..predN), then an "all" row with the macro averages, accuracy and
+     * ECE and the predicted-class totals. Binary (path ends in ".bin"), per epoch: int epoch,
+     * int classes, int bins, long[classes * classes] confusion, then per bin long count,
+     * long correct, double confidence sum; big-endian (DataOutputStream).
+     */
+    public static class Log implements AutoCloseable {
+        final boolean binary;
+        final BufferedWriter csv;
+        final DataOutputStream bin;
+        final boolean append;
+        private boolean headerDone;
+
+        public Log(String path, boolean append) throws IOException {
+            binary = path.endsWith(".bin");
+            csv = binary ? null : new BufferedWriter(new FileWriter(path, append));
+            bin = binary ? new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path, append))) : null;
+            this.append = append;
+        }
+
+        public void write(int epoch, EvalMetrics m) throws IOException {
+            if (binary) {
+                bin.writeInt(epoch);
+                bin.writeInt(m.classes);
+                bin.writeInt(BINS);
+                for (long v : m.confusion) bin.writeLong(v);
+                for (int b = 0; b < BINS; b++) {
+                    bin.writeLong(m.binCount[b]);
+                    bin.writeLong(m.binCorrect[b]);
+                    bin.writeDouble(m.binConf[b]);
+                }
+                bin.flush();
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            if (!append && !headerDone) {
+                sb.append("epoch,class,support,precision,recall,f1,accuracy,ece");
+                for (int p = 0; p < m.classes; p++) sb.append(",pred").append(p);
+                sb.append('\n');
+                headerDone = true;
+            }
+            for (int c = 0; c < m.classes; c++) {
+                sb.append(epoch).append(',').append(c).append(',').append(m.support(c))
+                  .append(',').append(m.precision(c)).append(',').append(m.recall(c)).append(',').append(m.f1(c))
+                  .append(",,");
+                for (int p = 0; p < m.classes; p++) sb.append(',').append(m.count(c, p));
+                sb.append('\n');
+            }
+            double mp = 0.0, mr = 0.0;
+            for (int c = 0; c < m.classes; c++) { mp += m.precision(c); mr += m.recall(c); }
+            sb.append(epoch).append(",all,").append(m.total).append(',').append(mp / m.classes).append(',')
+              .append(mr / m.classes).append(',').append(m.macroF1()).append(',').append(m.accuracy())
+              .append(',').append(m.ece());
+            for (int p = 0; p < m.classes; p++) sb.append(',').append(m.predicted(p));
+            csv.write(sb.append('\n').toString());
+            csv.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (binary) bin.close();
+            else csv.close();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+// =========================
+// GENERATED by KernelGen - do not edit; re-run `java KernelGen` after changing a model
+// =========================
+final class GeneratedKernels {
+    // -Dnn.kernels=generic forces the generic loops, e.g. to compare timings
+    static final boolean ENABLED = !"generic".equals(System.getProperty("nn.kernels"));
+
+    private GeneratedKernels() {}
+
+    static ConvReLUPool.Kernel convReLUPool(int inC, int inH, int inW, int outC, int kH, int kW) {
+        if (!ENABLED) return null;
+        if (inC == 1 && inH == 28 && inW == 28 && outC == 16 && kH == 3 && kW == 3) return GeneratedKernels::convReLUPool_1x28x28_16x3x3;
+        if (inC == 1 && inH == 28 && inW == 28 && outC == 8 && kH == 3 && kW == 3) return GeneratedKernels::convReLUPool_1x28x28_8x3x3;
+        if (inC == 8 && inH == 13 && inW == 13 && outC == 16 && kH == 3 && kW == 3) return GeneratedKernels::convReLUPool_8x13x13_16x3x3;
+        return null;
+    }
+
+    static Dense.Kernel dense(int in, int out) {
+        if (!ENABLED) return null;
+        if (in == 2704 && out == 256) return GeneratedKernels::dense_2704x256;
+        if (in == 256 && out == 128) return GeneratedKernels::dense_256x128;
+        if (in == 128 && out == 10) return GeneratedKernels::dense_128x10;
+        if (in == 400 && out == 256) return GeneratedKernels::dense_400x256;
+        return null;
+    }
+
+    static void convReLUPool_1x28x28_16x3x3(double[] x, double[] K, double[] B, double[] y, byte[] arg) {
+        int o = 0;
+        for (int f = 0; f < 16; f++) {
+            final int kf = f * 9;
+            final double k0 = K[kf + 0];
+            final double k1 = K[kf + 1];
+            final double k2 = K[kf + 2];
+            final double k3 = K[kf + 3];
+            final double k4 = K[kf + 4];
+            final double k5 = K[kf + 5];
+            final double k6 = K[kf + 6];
+            final double k7 = K[kf + 7];
+            final double k8 = K[kf + 8];
+            final double bias = B[f];
+            for (int pi = 0; pi < 13; pi++) {
+                for (int pj = 0; pj < 13; pj++) {
+                    double s00 = bias, s01 = bias, s10 = bias, s11 = bias;
+                    final int xb = pi * 56 + pj * 2;
+                    s00 += x[xb + 0] * k0; s01 += x[xb + 1] * k0;
+                    s10 += x[xb + 28] * k0; s11 += x[xb + 29] * k0;
+                    s00 += x[xb + 1] * k1; s01 += x[xb + 2] * k1;
+                    s10 += x[xb + 29] * k1; s11 += x[xb + 30] * k1;
+                    s00 += x[xb + 2] * k2; s01 += x[xb + 3] * k2;
+                    s10 += x[xb + 30] * k2; s11 += x[xb + 31] * k2;
+                    s00 += x[xb + 28] * k3; s01 += x[xb + 29] * k3;
+                    s10 += x[xb + 56] * k3; s11 += x[xb + 57] * k3;
+                    s00 += x[xb + 29] * k4; s01 += x[xb + 30] * k4;
+                    s10 += x[xb + 57] * k4; s11 += x[xb + 58] * k4;
+                    s00 += x[xb + 30] * k5; s01 += x[xb + 31] * k5;
+                    s10 += x[xb + 58] * k5; s11 += x[xb + 59] * k5;
+                    s00 += x[xb + 56] * k6; s01 += x[xb + 57] * k6;
+                    s10 += x[xb + 84] * k6; s11 += x[xb + 85] * k6;
+                    s00 += x[xb + 57] * k7; s01 += x[xb + 58] * k7;
+                    s10 += x[xb + 85] * k7; s11 += x[xb + 86] * k7;
+                    s00 += x[xb + 58] * k8; s01 += x[xb + 59] * k8;
+                    s10 += x[xb + 86] * k8; s11 += x[xb + 87] * k8;
+                    double mv = Double.NEGATIVE_INFINITY, a;
+                    int code = 0;
+                    if ((a = ReLU.relu(s00)) > mv) { mv = a; code = 0; }
+                    if ((a = ReLU.relu(s01)) > mv) { mv = a; code = 1; }
+                    if ((a = ReLU.relu(s10)) > mv) { mv = a; code = 2; }
+                    if ((a = ReLU.relu(s11)) > mv) { mv = a; code = 3; }
+                    y[o] = mv;
+                    arg[o++] = (byte) code;
+                }
+            }
+        }
+    }
+
+    static void convReLUPool_1x28x28_8x3x3(double[] x, double[] K, double[] B, double[] y, byte[] arg) {
+        int o = 0;
+        for (int f = 0; f < 8; f++) {
+            final int kf = f * 9;
+            final double k0 = K[kf + 0];
+            final double k1 = K[kf + 1];
+            final double k2 = K[kf + 2];
+            final double k3 = K[kf + 3];
+            final double k4 = K[kf + 4];
+            final double k5 = K[kf + 5];
+            final double k6 = K[kf + 6];
+            final double k7 = K[kf + 7];
+            final double k8 = K[kf + 8];
+            final double bias = B[f];
+            for (int pi = 0; pi < 13; pi++) {
+                for (int pj = 0; pj < 13; pj++) {
+                    double s00 = bias, s01 = bias, s10 = bias, s11 = bias;
+                    final int xb = pi * 56 + pj * 2;
+                    s00 += x[xb + 0] * k0; s01 += x[xb + 1] * k0;
+                    s10 += x[xb + 28] * k0; s11 += x[xb + 29] * k0;
+                    s00 += x[xb + 1] * k1; s01 += x[xb + 2] * k1;
+                    s10 += x[xb + 29] * k1; s11 += x[xb + 30] * k1;
+                    s00 += x[xb + 2] * k2; s01 += x[xb + 3] * k2;
+                    s10 += x[xb + 30] * k2; s11 += x[xb + 31] * k2;
+                    s00 += x[xb + 28] * k3; s01 += x[xb + 29] * k3;
+                    s10 += x[xb + 56] * k3; s11 += x[xb + 57] * k3;
+                    s00 += x[xb + 29] * k4; s01 += x[xb + 30] * k4;
+                    s10 += x[xb + 57] * k4; s11 += x[xb + 58] * k4;
+                    s00 += x[xb + 30] * k5; s01 += x[xb + 31] * k5;
+                    s10 += x[xb + 58] * k5; s11 += x[xb + 59] * k5;
+                    s00 += x[xb + 56] * k6; s01 += x[xb + 57] * k6;
+                    s10 += x[xb + 84] * k6; s11 += x[xb + 85] * k6;
+                    s00 += x[xb + 57] * k7; s01 += x[xb + 58] * k7;
+                    s10 += x[xb + 85] * k7; s11 += x[xb + 86] * k7;
+                    s00 += x[xb + 58] * k8; s01 += x[xb + 59] * k8;
+                    s10 += x[xb + 86] * k8; s11 += x[xb + 87] * k8;
+                    double mv = Double.NEGATIVE_INFINITY, a;
+                    int code = 0;
+                    if ((a = ReLU.relu(s00)) > mv) { mv = a; code = 0; }
+                    if ((a = ReLU.relu(s01)) > mv) { mv = a; code = 1; }
+                    if ((a = ReLU.relu(s10)) > mv) { mv = a; code = 2; }
+                    if ((a = ReLU.relu(s11)) > mv) { mv = a; code = 3; }
+                    y[o] = mv;
+                    arg[o++] = (byte) code;
+                }
+            }
+        }
+    }
+
+    static void convReLUPool_8x13x13_16x3x3(double[] x, double[] K, double[] B, double[] y, byte[] arg) {
+        int o = 0;
+        for (int f = 0; f < 16; f++) {
+            final int kf = f * 72;
+            final double bias = B[f];
+            for (int pi = 0; pi < 5; pi++) {
+                for (int pj = 0; pj < 5; pj++) {
+                    double s00 = bias, s01 = bias, s10 = bias, s11 = bias;
+                    for (int c = 0; c < 8; c++) {
+                        final int kc = kf + c * 9;
+                        final int xb = c * 169 + pi * 26 + pj * 2;
+                        { final double k = K[kc + 0];
+                          s00 += x[xb + 0] * k; s01 += x[xb + 1] * k;
+                          s10 += x[xb + 13] * k; s11 += x[xb + 14] * k; }
+                        { final double k = K[kc + 1];
+                          s00 += x[xb + 1] * k; s01 += x[xb + 2] * k;
+                          s10 += x[xb + 14] * k; s11 += x[xb + 15] * k; }
+                        { final double k = K[kc + 2];
+                          s00 += x[xb + 2] * k; s01 += x[xb + 3] * k;
+                          s10 += x[xb + 15] * k; s11 += x[xb + 16] * k; }
+                        { final double k = K[kc + 3];
+                          s00 += x[xb + 13] * k; s01 += x[xb + 14] * k;
+                          s10 += x[xb + 26] * k; s11 += x[xb + 27] * k; }
+                        { final double k = K[kc + 4];
+                          s00 += x[xb + 14] * k; s01 += x[xb + 15] * k;
+                          s10 += x[xb + 27] * k; s11 += x[xb + 28] * k; }
+                        { final double k = K[kc + 5];
+                          s00 += x[xb + 15] * k; s01 += x[xb + 16] * k;
+                          s10 += x[xb + 28] * k; s11 += x[xb + 29] * k; }
+                        { final double k = K[kc + 6];
+                          s00 += x[xb + 26] * k; s01 += x[xb + 27] * k;
+                          s10 += x[xb + 39] * k; s11 += x[xb + 40] * k; }
+                        { final double k = K[kc + 7];
+                          s00 += x[xb + 27] * k; s01 += x[xb + 28] * k;
+                          s10 += x[xb + 40] * k; s11 += x[xb + 41] * k; }
+                        { final double k = K[kc + 8];
+                          s00 += x[xb + 28] * k; s01 += x[xb + 29] * k;
+                          s10 += x[xb + 41] * k; s11 += x[xb + 42] * k; }
+                    }
+                    double mv = Double.NEGATIVE_INFINITY, a;
+                    int code = 0;
+                    if ((a = ReLU.relu(s00)) > mv) { mv = a; code = 0; }
+                    if ((a = ReLU.relu(s01)) > mv) { mv = a; code = 1; }
+                    if ((a = ReLU.relu(s10)) > mv) { mv = a; code = 2; }
+                    if ((a = ReLU.relu(s11)) > mv) { mv = a; code = 3; }
+                    y[o] = mv;
+                    arg[o++] = (byte) code;
+                }
+            }
+        }
+    }
+
+    static void dense_2704x256(double[] x, int[] rows, int n, double[] W, double[] y) {
+        for (int k = 0; k < n; k++) {
+            final int i = rows == null ? k : rows[k];
+            final double xi = x[i];
+            final int base = i * 256;
+            for (int j = 0; j < 256; j++) y[j] += xi * W[base + j];
+        }
+    }
+
+    static void dense_256x128(double[] x, int[] rows, int n, double[] W, double[] y) {
+        for (int k = 0; k < n; k++) {
+            final int i = rows == null ? k : rows[k];
+            final double xi = x[i];
+            final int base = i * 128;
+            for (int j = 0; j < 128; j++) y[j] += xi * W[base + j];
+        }
+    }
+
+    static void dense_128x10(double[] x, int[] rows, int n, double[] W, double[] y) {
+        for (int k = 0; k < n; k++) {
+            final int i = rows == null ? k : rows[k];
+            final double xi = x[i];
+            final int base = i * 10;
+            for (int j = 0; j < 10; j++) y[j] += xi * W[base + j];
+        }
+    }
+
+    static void dense_400x256(double[] x, int[] rows, int n, double[] W, double[] y) {
+        for (int k = 0; k < n; k++) {
+            final int i = rows == null ? k : rows[k];
+            final double xi = x[i];
+            final int base = i * 256;
+            for (int j = 0; j < 256; j++) y[j] += xi * W[base + j];
+        }
+    }
+}
@@ -0,0 +1,549 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// =========================
+// Gradient checks + backend equivalence (run: java GradCheck [--seed S] [--rounds R])
+// =========================
+/**
+ * Two kinds of checks, each printed as one line with its worst error and tolerance:
+ * <ul>
+ *   <li>Finite differences: every layer on random shapes, plus a whole model. The loss is
+ *       sum(y * r) for a random r, so backward(r) must give dL/dx and the param grads. Central
+ *       differences are taken on up to {@link #COORDS} random coordinates per tensor. For ReLU,
+ *       max-pool and the fused conv block, a coordinate whose one-sided slopes disagree sits on a
+ *       kink and is skipped.</li>
+ *   <li>Equivalence: every optimized path against the plain scalar one on identical weights. This
+ *       covers generated kernels, sparse Dense, batched grads, the fused conv block, CSR, parallel
+ *       optimizer steps, and the float32 and uint8 inputs of Predictor and MappedImages.</li>
+ * </ul>
+ * Tolerances are per dtype. f64 backends must agree to {@link #F64_TOL} relative to the largest
+ * value (most are bit-identical). Float outputs must agree to float rounding. uint8 storage must
+ * agree to half a grey level. Exits with status 1 when any check fails. Run it after touching a
+ * kernel.
+ */
+public class GradCheck {
+    static final double H = 1e-6;            // finite-difference step
+    static final double GRAD_TOL = 1e-5;     // analytic vs numeric, relative
+    static final double F64_TOL = 1e-12;     // f64 backend vs scalar reference, relative to max |value|
+    static final double F32_TOL = 1e-6;      // float32 outputs (Predictor probabilities)
+    static final double U8_TOL = 0.5 / 255;  // uint8 pixel storage
+    static final int COORDS = 24;            // finite-difference coordinates per tensor
+
+    int checks, failures;
+    final List<String> failed = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        java.util.Map<String, String> opt = RunConfig.parse(args);
+        long seed = Long.parseLong(opt.getOrDefault("seed", "1"));
+        int rounds = Integer.parseInt(opt.getOrDefault("rounds", "3"));
+        GradCheck g = new GradCheck();
+        g.runAll(seed, rounds);
+        System.out.printf("%n%d checks, %d failed%n", g.checks, g.failures);
+        for (String f : g.failed) System.out.println("  FAILED " + f);
+        if (g.failures > 0) System.exit(1);
+    }
+
+    /** Runs every check; results are in {@link #checks}, {@link #failures} and {@link #failed}. */
+    public void runAll(long seed, int rounds) throws IOException {
+        Random rnd = new Random(seed);
+        System.out.println("Finite-difference gradient checks");
+        for (int r = 0; r < rounds; r++) {
+            gradDense(rnd);
+            gradSparseDense(rnd);
+            gradConv(rnd);
+            gradConvReLUPool(rnd);
+            gradMaxPool(rnd);
+            gradReLU(rnd);
+            gradDropout(rnd);
+            gradSoftmaxCrossEntropy(rnd);
+        }
+        gradModel(rnd);
+
+        System.out.println("Backend equivalence");
+        for (int r = 0; r < rounds; r++) denseBackends(1 + rnd.nextInt(48), 1 + rnd.nextInt(24), rnd.nextLong());
+        for (int[] s : new int[][]{{2704, 256}, {256, 128}, {128, 10}, {400, 256}}) denseBackends(s[0], s[1], rnd.nextLong());
+        for (int r = 0; r < rounds; r++) {
+            int k = 1 + rnd.nextInt(3);
+            convBackends(1 + rnd.nextInt(3), k + 1 + rnd.nextInt(9), k + 1 + rnd.nextInt(9), 1 + rnd.nextInt(4), k, k, rnd.nextLong());
+        }
+        for (int[] s : new int[][]{{1, 28, 28, 16}, {1, 28, 28, 8}, {8, 13, 13, 16}}) convBackends(s[0], s[1], s[2], s[3], 3, 3, rnd.nextLong());
+        for (int r = 0; r < rounds; r++) sparseDense(1 + rnd.nextInt(64), 1 + rnd.nextInt(32), rnd.nextLong());
+        optimizers(rnd.nextLong());
+        batchedModel(rnd.nextLong());
+        predictor(rnd.nextLong());
+        syncThreads(rnd.nextLong());
+        mappedImages(rnd.nextLong());
+    }
+
+    // =========================
+    // Finite differences
+    // =========================
+    // r-weighted output sum after a training forward; hook runs first (e.g. re-keys dropout)
+    private static double loss(Layer l, double[] x, double[] r, Runnable hook) {
+        hook.run();
+        double[] y = l.forward(x, true);
+        double s = 0.0;
+        for (int j = 0; j < y.length; j++) s += y[j] * r[j];
+        return s;
+    }
+
+    private void gradLayer(String name, Layer l, double[] x, boolean piecewise, Runnable hook) {
+        Random rnd = new Random(x.length * 31L + name.hashCode());
+        hook.run();
+        double[] r = gaussian(l.forward(x, true).length, rnd);
+        for (double[] g : l.grads()) java.util.Arrays.fill(g, 0.0);
+        double[] dx = l.backward(r, true).clone();
+        l.flushGrads();
+
+        double worst = 0.0;
+        int skipped = 0;
+        List<double[]> tensors = new ArrayList<>(), analytic = new ArrayList<>();
+        tensors.add(x);
+        analytic.add(dx);
+        double[][] ps = l.params(), gs = l.grads();
+        for (int t = 0; t < ps.length; t++) { tensors.add(ps[t]); analytic.add(gs[t].clone()); }
+        for (int t = 0; t < tensors.size(); t++) {
+            double[] v = tensors.get(t), a = analytic.get(t);
+            for (int c = 0; c < Math.min(COORDS, v.length); c++) {
+                int i = v.length <= COORDS ? c : rnd.nextInt(v.length);
+                double orig = v[i];
+                double l0 = loss(l, x, r, hook);
+                v[i] = orig + H;
+                double lp = loss(l, x, r, hook);
+                v[i] = orig - H;
+                double lm = loss(l, x, r, hook);
+                v[i] = orig;
+                double fwd = (lp - l0) / H, bwd = (l0 - lm) / H, num = (lp - lm) / (2 * H);
+                if (piecewise && Math.abs(fwd - bwd) > 1e-6 * Math.max(1.0, Math.abs(num))) { skipped++; continue; }
+                worst = Math.max(worst, Math.abs(a[i] - num) / Math.max(1e-3, Math.abs(a[i]) + Math.abs(num)));
+            }
+        }
+        report("grad " + name + (skipped > 0 ? " (" + skipped + " kinks skipped)" : ""), worst, GRAD_TOL);
+    }
+
+    private void gradDense(Random rnd) {
+        int in = 1 + rnd.nextInt(40), out = 1 + rnd.nextInt(20);
+        Dense d = new Dense(in, out, rnd);
+        d.sparse = false;
+        d.kernel = null;
+        double[] x = gaussian(in, rnd);
+        for (int i = 0; i < in; i++) if (rnd.nextBoolean()) x[i] = 0.0;
+        gradLayer("Dense " + in + "x" + out, d, x, false, () -> {});
+    }
+
+    private void gradSparseDense(Random rnd) {
+        int in = 1 + rnd.nextInt(40), out = 1 + rnd.nextInt(20);
+        Dense d = new Dense(in, out, rnd);
+        for (int i = 0; i < d.W.length; i++) if (rnd.nextDouble() < 0.7) d.W[i] = 0.0;
+        double[] x = gaussian(in, rnd);
+        for (int i = 0; i < in; i++) if (rnd.nextBoolean()) x[i] = 0.0;
+        gradLayer("SparseDense " + in + "x" + out, SparseDense.of(d), x, false, () -> {});
+    }
+
+    private void gradConv(Random rnd) {
+        int inC = 1 + rnd.nextInt(3), k = 1 + rnd.nextInt(3), h = k + rnd.nextInt(7), w = k + rnd.nextInt(7), outC = 1 + rnd.nextInt(4);
+        Conv2D c = new Conv2D(inC, h, w, outC, k, k, rnd);
+        gradLayer(String.format("Conv2D %dx%dx%d -> %d (%dx%d)", inC, h, w, outC, k, k), c, gaussian(inC * h * w, rnd), false, () -> {});
+    }
+
+    private void gradConvReLUPool(Random rnd) {
+        int inC = 1 + rnd.nextInt(3), k = 1 + rnd.nextInt(3), h = k + 1 + rnd.nextInt(8), w = k + 1 + rnd.nextInt(8), outC = 1 + rnd.nextInt(4);
+        ConvReLUPool c = new ConvReLUPool(inC, h, w, outC, k, k, rnd);
+        gradLayer(String.format("ConvReLUPool %dx%dx%d -> %d (%dx%d)", inC, h, w, outC, k, k), c, gaussian(inC * h * w, rnd), true, () -> {});
+    }
+
+    private void gradMaxPool(Random rnd) {
+        int ch = 1 + rnd.nextInt(3), h = 2 + rnd.nextInt(8), w = 2 + rnd.nextInt(8);
+        gradLayer("MaxPool " + ch + "x" + h + "x" + w, new MaxPool(ch, h, w), gaussian(ch * h * w, rnd), true, () -> {});
+    }
+
+    private void gradReLU(Random rnd) {
+        int n = 1 + rnd.nextInt(64);
+        gradLayer("ReLU " + n, new ReLU(), gaussian(n, rnd), true, () -> {});
+    }
+
+    private void gradDropout(Random rnd) {
+        int n = 1 + rnd.nextInt(64);
+        Dropout d = new Dropout(0.3, rnd);
+        long key = rnd.nextLong();
+        gradLayer("Dropout " + n, d, gaussian(n, rnd), false, () -> d.setKey(key));
+    }
+
+    // dCE/dlogits against a soft target, through the loss itself rather than a weighted sum
+    private void gradSoftmaxCrossEntropy(Random rnd) {
+        int n = 2 + rnd.nextInt(12);
+        SoftmaxCrossEntropy s = new SoftmaxCrossEntropy();
+        double[] z = gaussian(n, rnd), target = new double[n];
+        double sum = 0.0;
+        for (int k = 0; k < n; k++) sum += target[k] = rnd.nextDouble();
+        for (int k = 0; k < n; k++) target[k] /= sum;
+        s.forward(z, true);
+        double[] a = s.backward(target, true).clone();
+        double worst = 0.0;
+        for (int i = 0; i < n; i++) {
+            double orig = z[i];
+            z[i] = orig + H; s.forward(z, true); double lp = s.loss(target);
+            z[i] = orig - H; s.forward(z, true); double lm = s.loss(target);
+            z[i] = orig;
+            double num = (lp - lm) / (2 * H);
+            worst = Math.max(worst, Math.abs(a[i] - num) / Math.max(1e-3, Math.abs(a[i]) + Math.abs(num)));
+        }
+        report("grad SoftmaxCrossEntropy " + n, worst, GRAD_TOL);
+    }
+
+    // the full DigitRecognizer stack (small sizes): softmax-CE loss of one label, every param tensor
+    private void gradModel(Random rnd) {
+        Sequential m = DigitRecognizer.buildModel(2, 12, 8, 0.0, rnd);
+        double[] x = new double[784];
+        for (int i = 0; i < x.length; i++) x[i] = rnd.nextDouble();
+        int label = rnd.nextInt(10);
+        m.zeroGrads();
+        m.forward(x, true);
+        m.backward(label);
+        m.flushGrads();
+        List<double[]> ps = m.params(), gs = m.grads();
+        double worst = 0.0;
+        int skipped = 0;
+        for (int t = 0; t < ps.size(); t++) {
+            double[] p = ps.get(t), a = gs.get(t);
+            for (int c = 0; c < Math.min(COORDS, p.length); c++) {
+                int i = p.length <= COORDS ? c : rnd.nextInt(p.length);
+                double orig = p[i];
+                double l0 = modelLoss(m, x, label);
+                p[i] = orig + H; double lp = modelLoss(m, x, label);
+                p[i] = orig - H; double lm = modelLoss(m, x, label);
+                p[i] = orig;
+                double fwd = (lp - l0) / H, bwd = (l0 - lm) / H, num = (lp - lm) / (2 * H);
+                // ReLU/max-pool kinks show up as a jump between the one-sided slopes
+                if (Math.abs(fwd - bwd) > 1e-3 * Math.max(1.0, Math.abs(num))) { skipped++; continue; }
+                worst = Math.max(worst, Math.abs(a[i] - num) / Math.max(1e-3, Math.abs(a[i]) + Math.abs(num)));
+            }
+        }
+        report("grad model 2/12/8 (softmax-CE)" + (skipped > 0 ? " (" + skipped + " kinks skipped)" : ""), worst, GRAD_TOL);
+    }
+
+    private static double modelLoss(Sequential m, double[] x, int label) {
+        m.forward(x, true);
+        return ((SoftmaxCrossEntropy) m.layers.get(m.layers.size() - 1)).loss(label);
+    }
+
+    // =========================
+    // Backend equivalence
+    // =========================
+    // Reference: full loops, no kernel, per-sample grads. Each variant sees the same 4 samples.
+    private void denseBackends(int in, int out, long seed) {
+        String shape = in + "x" + out;
+        Dense ref = new Dense(in, out, new Random(seed));
+        ref.sparse = false;
+        ref.kernel = null;
+        String[] names = {"generated kernel", "sparse", "sparse + kernel", "batched grads", "sparse + skip zero-input dx"};
+        for (int v = 0; v < names.length; v++) {
+            Dense d = new Dense(in, out, new Random(seed));
+            boolean hasKernel = d.kernel != null;
+            if ((v == 0 || v == 2) && !hasKernel) continue;   // no generated kernel for this shape
+            d.sparse = v != 0 && v != 3;
+            if (v == 1 || v == 3 || v == 4) d.kernel = null;
+            d.setBatchedGrads(v == 3);
+            d.skipZeroInputGrad = v == 4;
+            java.util.Arrays.fill(ref.dW, 0.0);
+            java.util.Arrays.fill(ref.db, 0.0);
+            Random data = new Random(seed ^ 0x5DEECE66DL);
+            double worst = 0.0;
+            for (int s = 0; s < 4; s++) {
+                double[] x = new double[in], dy = new double[out];
+                for (int i = 0; i < in; i++) x[i] = data.nextDouble() < 0.6 ? 0.0 : data.nextDouble();
+                for (int j = 0; j < out; j++) dy[j] = data.nextDouble() < 0.5 ? 0.0 : data.nextGaussian();
+                worst = Math.max(worst, diff(ref.forward(x, true), d.forward(x, true)));
+                double[] dxRef = ref.backward(dy, true).clone(), dx = d.backward(dy, true);
+                if (v == 4) for (int i = 0; i < in; i++) if (x[i] == 0.0) dxRef[i] = dx[i];   // skipped rows only feed zeros
+                worst = Math.max(worst, diff(dxRef, dx));
+            }
+            d.flushGrads();
+            worst = Math.max(worst, Math.max(diff(ref.dW, d.dW), diff(ref.db, d.db)));
+            report("Dense " + shape + " " + names[v], worst, F64_TOL);
+        }
+    }
+
+    // Reference: Conv2D -> ReLU -> MaxPool, per-sample grads
+    private void convBackends(int inC, int h, int w, int outC, int kH, int kW, long seed) {
+        String shape = String.format("%dx%dx%d -> %d (%dx%d)", inC, h, w, outC, kH, kW);
+        Conv2D conv = new Conv2D(inC, h, w, outC, kH, kW, new Random(seed));
+        MaxPool pool = new MaxPool(outC, conv.outH, conv.outW);
+        Sequential ref = new Sequential().add(conv).add(new ReLU()).add(pool);
+        ReLU relu = (ReLU) ref.layers.get(1);
+        String[] names = {"fused, generated kernel", "fused, generic", "fused, batched grads", "fused, dead-ReLU tracking"};
+        for (int v = 0; v < names.length; v++) {
+            ConvReLUPool f = new ConvReLUPool(inC, h, w, outC, kH, kW, new Random(seed));
+            if (v == 0 && f.kernel == null) continue;
+            if (v == 1 || v == 2) f.kernel = null;
+            if (v == 3) { f.startTracking(); relu.startTracking(); }
+            f.setBatchedGrads(v == 2);
+            java.util.Arrays.fill(conv.dK, 0.0);
+            java.util.Arrays.fill(conv.dB, 0.0);
+            Random data = new Random(seed ^ 0x5DEECE66DL);
+            double worst = 0.0;
+            for (int s = 0; s < 3; s++) {
+                double[] x = gaussian(inC * h * w, data), dy = gaussian(f.outSize(), data);
+                double[] yRef = ref.forward(x, true).clone();
+                worst = Math.max(worst, diff(yRef, f.forward(x, true)));
+                double[] g = dy;
+                for (int i = ref.layers.size() - 1; i >= 0; i--) g = ref.layers.get(i).backward(g, true);
+                worst = Math.max(worst, diff(g, f.backward(dy, true)));
+            }
+            f.flushGrads();
+            worst = Math.max(worst, Math.max(diff(conv.dK, f.conv.dK), diff(conv.dB, f.conv.dB)));
+            // the fused block only sees units inside pool windows, so the counts agree on even conv maps
+            if (v == 3) {
+                double dead = f.stopTracking(), deadRef = relu.stopTracking();
+                if (conv.outH % 2 == 0 && conv.outW % 2 == 0) worst = Math.max(worst, Math.abs(dead - deadRef));
+                else if (Double.isNaN(dead)) worst = Double.POSITIVE_INFINITY;
+            }
+            report("ConvReLUPool " + shape + " " + names[v], worst, F64_TOL);
+        }
+    }
+
+    // CSR forward and backward vs the masked dense layer it was built from
+    private void sparseDense(int in, int out, long seed) {
+        Random rnd = new Random(seed);
+        Dense d = new Dense(in, out, rnd);
+        d.sparse = false;
+        d.kernel = null;
+        for (int i = 0; i < d.W.length; i++) if (rnd.nextDouble() < 0.8) d.W[i] = 0.0;
+        SparseDense s = SparseDense.of(d);
+        double worst = 0.0;
+        for (int k = 0; k < 4; k++) {
+            double[] x = gaussian(in, rnd);
+            for (int i = 0; i < in; i++) if (rnd.nextBoolean()) x[i] = 0.0;
+            worst = Math.max(worst, diff(d.forward(x, true), s.forward(x, true)));
+            double[] dy = gaussian(out, rnd);
+            worst = Math.max(worst, diff(d.backward(dy, true), s.backward(dy, true)));
+        }
+        // grads of the surviving weights, gathered into CSR order
+        double[] dW = new double[s.nnz()];
+        for (int i = 0; i < in; i++)
+            for (int k = s.rowPtr[i]; k < s.rowPtr[i + 1]; k++) dW[k] = d.dW[i * out + s.cols[k]];
+        worst = Math.max(worst, Math.max(diff(dW, s.dVals), diff(d.db, s.db)));
+        report("SparseDense " + in + "x" + out + " (80% pruned) vs Dense", worst, F64_TOL);
+    }
+
+    // serial step vs parallel chunks, same grads for 3 steps
+    private void optimizers(long seed) {
+        for (String rule : new String[]{"sgd-nesterov", "adamw"}) {
+            Sequential ref = DigitRecognizer.buildModel(2, 16, 8, 0.0, new Random(seed));
+            Optimizer refOpt = optimizer(rule, false);
+            refOpt.bind(ref);
+            String[] names = {"parallel"};
+            Sequential[] models = new Sequential[names.length];
+            Optimizer[] opts = new Optimizer[names.length];
+            for (int v = 0; v < names.length; v++) {
+                models[v] = DigitRecognizer.buildModel(2, 16, 8, 0.0, new Random(seed));
+                opts[v] = optimizer(rule, true);
+                opts[v].bind(models[v]);
+            }
+            Random g = new Random(seed + 1);
+            for (int step = 0; step < 3; step++) {
+                List<double[]> refGrads = ref.grads();
+                for (double[] gr : refGrads) for (int i = 0; i < gr.length; i++) gr[i] = g.nextGaussian();
+                for (Sequential m : models) {
+                    List<double[]> gs = m.grads();
+                    for (int t = 0; t < gs.size(); t++) System.arraycopy(refGrads.get(t), 0, gs.get(t), 0, gs.get(t).length);
+                }
+                refOpt.step(32);
+                for (Optimizer o : opts) o.step(32);
+            }
+            for (int v = 0; v < names.length; v++) {
+                double worst = 0.0;
+                List<double[]> a = ref.params(), b = models[v].params();
+                for (int t = 0; t < a.size(); t++) worst = Math.max(worst, diff(a.get(t), b.get(t)));
+                report("Optimizer " + rule + " " + names[v], worst, F64_TOL);
+            }
+        }
+    }
+
+    private static Optimizer optimizer(String rule, boolean parallel) {
+        Optimizer o = rule.equals("adamw") ? new Adam(0.001, 0.0001, true) : new Sgd(0.01, 0.0001, 0.9, true);
+        o.parallel = parallel;
+        return o;
+    }
+
+    // whole model: batched grads and a replica vs per-sample grads on the original
+    private void batchedModel(long seed) {
+        Sequential ref = DigitRecognizer.buildModel(4, 32, 16, 0.2, new Random(seed));
+        Sequential batched = DigitRecognizer.buildModel(4, 32, 16, 0.2, new Random(seed)).setBatchedGrads(true);
+        Sequential replica = ref.replica(seed);
+        Random data = new Random(seed + 1);
+        ref.zeroGrads();
+        batched.zeroGrads();
+        double worstReplica = 0.0;
+        for (int s = 0; s < 6; s++) {
+            double[] x = new double[784];
+            for (int i = 0; i < x.length; i++) x[i] = data.nextDouble() < 0.7 ? 0.0 : data.nextDouble();
+            int label = data.nextInt(10);
+            ref.setSample(seed, 1, s);
+            batched.setSample(seed, 1, s);
+            ref.forward(x, true);
+            ref.backward(label);
+            batched.forward(x, true);
+            batched.backward(label);
+            worstReplica = Math.max(worstReplica, diff(ref.forward(x, false).clone(), replica.forward(x, false)));
+        }
+        batched.flushGrads();
+        double worst = 0.0;
+        List<double[]> a = ref.grads(), b = batched.grads();
+        for (int t = 0; t < a.size(); t++) worst = Math.max(worst, diff(a.get(t), b.get(t)));
+        report("Sequential batched grads (6 samples, dropout)", worst, F64_TOL);
+        report("Sequential replica forward", worstReplica, F64_TOL);
+    }
+
+    // float32 and uint8 inputs, float32 probabilities, two worker replicas
+    private void predictor(long seed) {
+        Sequential m = DigitRecognizer.buildModel(4, 32, 16, 0.0, new Random(seed));
+        Random data = new Random(seed + 1);
+        int n = 200;
+        float[][] f32 = new float[n][784];
+        byte[] u8 = new byte[n * 784];
+        for (int i = 0; i < n; i++)
+            for (int p = 0; p < 784; p++) {
+                int v = data.nextDouble() < 0.7 ? 0 : data.nextInt(256);
+                u8[i * 784 + p] = (byte) v;
+                f32[i][p] = (float) (v / 255.0);
+            }
+        try (Predictor pr = new Predictor(m, 2)) {
+            Predictor.Result rf = pr.predictBatch(f32, 3), rb = pr.predictBatch(u8, n, 3);
+            double worstF = 0.0, worstB = 0.0;
+            int argmaxMismatch = 0;
+            double[] x = new double[784];
+            for (int i = 0; i < n; i++) {
+                for (int p = 0; p < 784; p++) x[p] = f32[i][p];
+                double[] probs = m.forward(x, false);
+                worstF = Math.max(worstF, Math.abs(rf.topProbs[i * 3] - probs[rf.topLabels[i * 3]]));
+                if (rf.argmax[i] != m.predict(x)) argmaxMismatch++;
+                for (int p = 0; p < 784; p++) x[p] = (u8[i * 784 + p] & 0xFF) / 255.0;
+                probs = m.forward(x, false);
+                worstB = Math.max(worstB, Math.abs(rb.topProbs[i * 3] - probs[rb.topLabels[i * 3]]));
+                if (rb.argmax[i] != m.predict(x)) argmaxMismatch++;
+            }
+            report("Predictor float32 input, float32 probs", worstF, F32_TOL);
+            report("Predictor uint8 input, float32 probs", worstB, F32_TOL);
+            report("Predictor argmax vs Sequential.predict", argmaxMismatch, 0);
+
+            // concurrent callers, each on its own rotation of the batch, against the serial result
+            int callers = 4;
+            double[] worstC = new double[callers];
+            Thread[] th = new Thread[callers];
+            for (int c = 0; c < callers; c++) {
+                final int shift = c * 37;
+                th[c] = new Thread(() -> {
+                    float[][] mine = new float[n][];
+                    for (int i = 0; i < n; i++) mine[i] = f32[(i + shift) % n];
+                    for (int rep = 0; rep < 20; rep++) {
+                        Predictor.Result r = pr.predictBatch(mine, 3);
+                        for (int i = 0; i < n; i++) {
+                            int j = (i + shift) % n;
+                            double d = r.argmax[i] != rf.argmax[j] ? Double.POSITIVE_INFINITY : Math.abs(r.topProbs[i * 3] - rf.topProbs[j * 3]);
+                            worstC[shift / 37] = Math.max(worstC[shift / 37], d);
+                        }
+                    }
+                });
+                th[c].start();
+            }
+            double worstAll = 0.0;
+            for (int c = 0; c < callers; c++) {
+                try { th[c].join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                worstAll = Math.max(worstAll, worstC[c]);
+            }
+            report("Predictor 4 concurrent callers vs serial", worstAll, 0);
+        }
+    }
+
+    // HogwildTrainer SYNC with several thread counts against one thread: the weights must be identical
+    private void syncThreads(long seed) {
+        List<double[]> xs = new ArrayList<>();
+        List<Integer> ys = new ArrayList<>();
+        SyntheticDigits.generate(100, seed, xs, ys);
+        List<double[]> ref = null;
+        for (int threads : new int[]{1, 2, 3, 5}) {
+            Sequential m = DigitRecognizer.buildModel(4, 32, 16, 0.2, new Random(seed));
+            HogwildTrainer t = new HogwildTrainer(m, threads, seed);
+            t.mode = HogwildTrainer.Mode.SYNC;
+            t.batchSize = 40;   // chunks of 16, 16 and 8
+            double worst = 0.0;
+            try {
+                for (int e = 1; e <= 2; e++) t.trainEpoch(xs, ys, e);
+            } catch (Exception e) {
+                worst = Double.POSITIVE_INFINITY;
+            } finally {
+                t.shutdown();
+            }
+            if (ref == null) { ref = m.params(); continue; }
+            for (int i = 0; i < ref.size(); i++) worst = Math.max(worst, diff(ref.get(i), m.params().get(i)));
+            report("HogwildTrainer SYNC " + threads + " threads vs 1", worst, 0);
+        }
+    }
+
+    // uint8 cache vs the double loader on the same CSV
+    private void mappedImages(long seed) throws IOException {
+        File csv = File.createTempFile("gradcheck", ".csv");
+        File cache = new File(csv.getPath() + ".u8");
+        try {
+            Random data = new Random(seed);
+            try (Writer w = new FileWriter(csv)) {
+                StringBuilder header = new StringBuilder();
+                for (int p = 0; p < 784; p++) header.append("pixel").append(p).append(',');
+                w.write(header.append("label\n").toString());
+                for (int i = 0; i < 50; i++) {
+                    StringBuilder row = new StringBuilder();
+                    for (int p = 0; p < 784; p++) row.append(data.nextDouble() < 0.7 ? 0 : data.nextInt(256)).append(',');
+                    w.write(row.append(data.nextInt(10)).append('\n').toString());
+                }
+            }
+            List<double[]> ref = DigitRecognizer.loadInputs(csv.getPath(), 784);
+            List<Integer> refLabels = DigitRecognizer.loadLabels(csv.getPath(), 784);
+            MappedImages m = MappedImages.fromCsv(csv.getPath());
+            double worst = m.size() == ref.size() ? 0.0 : Double.POSITIVE_INFINITY;
+            for (int i = 0; i < Math.min(m.size(), ref.size()); i++) {
+                worst = Math.max(worst, diff(ref.get(i), m.image(i)));
+                if (!refLabels.get(i).equals(m.labels().get(i))) worst = Double.POSITIVE_INFINITY;
+            }
+            report("MappedImages uint8 cache vs CSV loader", worst, U8_TOL);
+        } finally {
+            csv.delete();
+            cache.delete();
+        }
+    }
+
+    // =========================
+    // Helpers
+    // =========================
+    private void report(String name, double err, double tol) {
+        checks++;
+        boolean ok = err <= tol;
+        if (!ok) { failures++; failed.add(name); }
+        System.out.printf(Locale.ROOT, "  %-62s %9.2e  tol %.0e  %s%n", name, err, tol, ok ? (err == 0.0 ? "ok (exact)" : "ok") : "FAIL");
+    }
+
+    // max |a - b| relative to max(1, max |a|); infinite on length mismatch or NaN
+    static double diff(double[] a, double[] b) {
+        if (a.length != b.length) return Double.POSITIVE_INFINITY;
+        double scale = 1.0, worst = 0.0;
+        for (double v : a) scale = Math.max(scale, Math.abs(v));
+        for (int i = 0; i < a.length; i++) {
+            double d = Math.abs(a[i] - b[i]);
+            if (Double.isNaN(d)) return Double.POSITIVE_INFINITY;
+            worst = Math.max(worst, d);
+        }
+        return worst / scale;
+    }
+
+    private static double[] gaussian(int n, Random rnd) {
+        double[] v = new double[n];
+        for (int i = 0; i < n; i++) v[i] = rnd.nextGaussian();
+        return v;
+    }
+}
@@ -0,0 +1,220 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// =========================
+// Multi-threaded training: synchronous data-parallel vs Hogwild
+// =========================
+/**
+ * Every worker thread owns a {@link Sequential#replica} of the model (shared parameter arrays,
+ * private caches and grads).
+ * <ul>
+ *   <li>SYNC: each global batch is cut into fixed {@link #SYNC_CHUNK}-sample chunks that the threads
+ *       share out. Each chunk's grads are added into the model in chunk order, and then one optimizer
+ *       step is taken. The chunking and the summation order do not depend on the thread count, so
+ *       every thread count gives bit-identical weights. They match the single-threaded Trainer up to
+ *       rounding.</li>
+ *   <li>HOGWILD: each thread walks its own slice of the epoch in small local batches and writes plain
+ *       SGD updates straight into the shared arrays with no locking. Only coordinates with a nonzero
+ *       gradient are written (L2 is applied lazily to those), so the mostly-zero rows of dW1 for dead
+ *       convFeat entries are never touched.</li>
+ *   <li>ATOMIC: like HOGWILD, but each write is a CAS-based atomic add, so no update is ever lost.</li>
+ * </ul>
+ * Hogwild modes use plain SGD; momentum/Adam state would race the same way the weights do.
+ */
+public class HogwildTrainer {
+    enum Mode { SYNC, HOGWILD, ATOMIC }
+
+    static final VarHandle DOUBLES = MethodHandles.arrayElementVarHandle(double[].class);
+    static final int SYNC_CHUNK = 16;   // samples per SYNC reduction unit, independent of threads
+
+    final Sequential model;
+    final Sequential[] replicas;
+    final long seed;        // epoch order and dropout masks, as in Trainer
+    final ExecutorService pool;
+    Mode mode = Mode.HOGWILD;
+    Optimizer optimizer = new Sgd(0.01, 0.0001);   // SYNC uses it as is; Hogwild reads lr/weightDecay
+    int batchSize = 128;    // SYNC global batch
+    int localBatch = 4;     // Hogwild per-thread batch between writes
+
+    public HogwildTrainer(Sequential model, int threads, long seed) {
+        this.model = model;
+        this.seed = seed;
+        this.replicas = new Sequential[threads];
+        for (int t = 0; t < threads; t++) replicas[t] = model.replica(seed + t).setBatchedGrads(true);
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread th = new Thread(r, "trainer-worker");
+            th.setDaemon(true);
+            return th;
+        });
+        optimizer.bind(model);
+    }
+
+    /** One pass over the data; returns the mean training loss. */
+    public double trainEpoch(List<double[]> inputs, List<Integer> labels, int epoch) throws Exception {
+        int[] indices = Trainer.epochOrder(labels, seed, epoch, true);
+        double loss = mode == Mode.SYNC ? syncEpoch(inputs, labels, indices, epoch) : hogwildEpoch(inputs, labels, indices, epoch);
+        return loss / Math.max(1, inputs.size());
+    }
+
+    private double syncEpoch(List<double[]> inputs, List<Integer> labels, int[] indices, int epoch) throws Exception {
+        int threads = replicas.length;
+        List<double[]> modelGrads = model.grads();
+        double lossSum = 0.0;
+        for (int batchStart = 0; batchStart < indices.length; batchStart += batchSize) {
+            int batchEnd = Math.min(batchStart + batchSize, indices.length);
+            int chunks = (batchEnd - batchStart + SYNC_CHUNK - 1) / SYNC_CHUNK;
+            double[] chunkLoss = new double[chunks];
+            Turn turn = new Turn();
+            model.zeroGrads();
+            List<Callable<Void>> jobs = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int tid = t, first = batchStart;
+                jobs.add(() -> {
+                    Sequential r = replicas[tid];
+                    try {
+                        for (int c = tid; c < chunks; c += threads) {
+                            r.zeroGrads();
+                            int from = first + c * SYNC_CHUNK, to = Math.min(from + SYNC_CHUNK, batchEnd);
+                            double l = 0.0;
+                            for (int p = from; p < to; p++) {
+                                int idx = indices[p];
+                                r.setSample(seed, epoch, idx);
+                                r.forward(inputs.get(idx), true);
+                                l += r.backward(labels.get(idx));
+                            }
+                            r.flushGrads();
+                            chunkLoss[c] = l;
+                            // add this chunk into the model once every earlier chunk is in
+                            turn.await(c);
+                            List<double[]> rgs = r.grads();
+                            for (int n = 0; n < modelGrads.size(); n++) {
+                                double[] g = modelGrads.get(n), rg = rgs.get(n);
+                                for (int i = 0; i < g.length; i++) g[i] += rg[i];
+                            }
+                            turn.pass();
+                        }
+                    } catch (Throwable e) {
+                        turn.fail(e);
+                        throw e;
+                    }
+                    return null;
+                });
+            }
+            // the pool has exactly one thread per job, so every chunk's owner is running
+            pool.invokeAll(jobs);
+            if (turn.cause != null) throw new ExecutionException(turn.cause);
+            for (double l : chunkLoss) lossSum += l;
+            optimizer.step(batchEnd - batchStart);
+        }
+        return lossSum;
+    }
+
+    // Hands out the SYNC reduction slot in chunk order. A failed job releases the waiters.
+    private static final class Turn {
+        private int next;
+        Throwable cause;
+
+        synchronized void await(int chunk) throws InterruptedException {
+            while (next != chunk && cause == null) wait();
+            if (cause != null) throw new IllegalStateException("another sync worker failed", cause);
+        }
+
+        synchronized void pass() { next++; notifyAll(); }
+
+        synchronized void fail(Throwable e) {
+            if (cause == null) cause = e;
+            notifyAll();
+        }
+    }
+
+    private double hogwildEpoch(List<double[]> inputs, List<Integer> labels, int[] indices, int epoch) throws Exception {
+        int threads = replicas.length;
+        List<int[]> shapes = model.shapes();
+        List<Callable<Double>> jobs = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int tid = t;
+            jobs.add(() -> {
+                Sequential r = replicas[tid];
+                List<double[]> ps = r.params(), gs = r.grads();
+                double l = 0.0;
+                int from = (int) ((long) indices.length * tid / threads), to = (int) ((long) indices.length * (tid + 1) / threads);
+                for (int b = from; b < to; b += localBatch) {
+                    int e = Math.min(b + localBatch, to);
+                    r.zeroGrads();
+                    for (int p = b; p < e; p++) {
+                        int idx = indices[p];
+                        r.setSample(seed, epoch, idx);
+                        r.forward(inputs.get(idx), true);
+                        l += r.backward(labels.get(idx));
+                    }
+                    r.flushGrads();
+                    for (int n = 0; n < ps.size(); n++)
+                        write(ps.get(n), gs.get(n), 1.0 / (e - b), shapes.get(n).length > 1 ? optimizer.weightDecay : 0.0);
+                }
+                return l;
+            });
+        }
+        double lossSum = 0.0;
+        for (Future<Double> f : pool.invokeAll(jobs)) lossSum += f.get();
+        return lossSum;
+    }
+
+    // lock-free SGD write of one param array; zero-gradient coordinates are skipped entirely
+    private void write(double[] p, double[] g, double invBs, double decay) {
+        double lr = optimizer.lr;
+        boolean atomic = mode == Mode.ATOMIC;
+        for (int i = 0; i < p.length; i++) {
+            double gi = g[i];
+            if (gi == 0.0) continue;
+            if (atomic) {
+                double cur, next;
+                do {
+                    cur = (double) DOUBLES.getVolatile(p, i);
+                    next = cur - lr * (gi * invBs + decay * cur);
+                } while (!DOUBLES.compareAndSet(p, i, cur, next));
+            } else {
+                p[i] -= lr * (gi * invBs + decay * p[i]);
+            }
+        }
+    }
+
+    public void shutdown() { pool.shutdownNow(); }
+
+    // =========================
+    // Throughput / accuracy comparison on synthetic data
+    // =========================
+    // usage: HogwildTrainer [threads] [samples] [epochs]
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        List<double[]> trainX = new ArrayList<>(), testX = new ArrayList<>();
+        List<Integer> trainY = new ArrayList<>(), testY = new ArrayList<>();
+        SyntheticDigits.generate(samples, 1, trainX, trainY);
+        SyntheticDigits.generate(samples / 4, 2, testX, testY);
+
+        System.out.printf("%d threads, %d samples, %d epochs%n", threads, samples, epochs);
+        System.out.printf("%-8s %12s %10s %10s%n", "mode", "samples/s", "loss", "accuracy");
+        for (Mode mode : Mode.values()) {
+            Sequential model = DigitRecognizer.buildModel(16, 256, 128, 0.20, new Random(42));
+            HogwildTrainer trainer = new HogwildTrainer(model, threads, 7);
+            trainer.mode = mode;
+            double loss = 0;
+            long t0 = System.nanoTime();
+            for (int e = 1; e <= epochs; e++) loss = trainer.trainEpoch(trainX, trainY, e);
+            double secs = (System.nanoTime() - t0) / 1e9;
+            trainer.shutdown();
+            double acc = new Trainer(model, new Random(0)).evaluate(testX, testY, new double[10]);
+            System.out.printf("%-8s %12.1f %10.4f %9.2f%%%n", mode, samples * (double) epochs / secs, loss, acc * 100);
+        }
+    }
+}
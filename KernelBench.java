@@ -0,0 +1,141 @@
+import java.util.Random;
+
+// =========================
+// Kernel microbenchmarks (run: java KernelBench [case])
+// =========================
+/**
+ * Quick timing harness for single kernels at the DigitRecognizer shapes. Each case warms up first,
+ * then reports the mean time per call. Numbers are indicative only; use the same JVM flags when
+ * comparing runs.
+ */
+public class KernelBench {
+    // fraction of zero entries in the synthetic Dense output grads (-Dnn.bench.dyZeros=...)
+    static final double DY_ZEROS = Double.parseDouble(System.getProperty("nn.bench.dyZeros", "0.5"));
+
+    public static void main(String[] args) {
+        String which = args.length > 0 ? args[0] : "all";
+        if (which.equals("all") || which.equals("dense-sparsity")) denseSparsity();
+        if (which.equals("all") || which.equals("batch-grads")) batchGrads();
+        if (which.equals("all") || which.equals("conv-block")) convBlock();
+        if (which.equals("all") || which.equals("specialized")) specialized();
+    }
+
+    static double timeMs(Runnable r, int iters) {
+        for (int i = 0; i < Math.max(5, iters / 5); i++) r.run();   // warm-up
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++) r.run();
+        return (System.nanoTime() - t0) / 1e6 / iters;
+    }
+
+    // ----- Dense 2704 -> 256 forward+backward at typical post-ReLU/max-pool sparsity -----
+    static void denseSparsity() {
+        Random rnd = new Random(1);
+        Dense dense = new Dense(2704, 256, rnd);
+        dense.skipZeroInputGrad = true;
+        double[] x = new double[2704], dy = new double[256];
+        System.out.println("Dense 2704x256 fwd+bwd (dy 50% zero, as after ReLU)");
+        System.out.printf("  %-14s %12s %12s %9s%n", "input zeros", "dense ms", "sparse ms", "speedup");
+        for (double zeros : new double[]{0.0, 0.5, 0.75, 0.9}) {
+            for (int i = 0; i < x.length; i++) x[i] = rnd.nextDouble() < zeros ? 0.0 : rnd.nextDouble();
+            for (int j = 0; j < dy.length; j++) dy[j] = rnd.nextDouble() < 0.5 ? 0.0 : rnd.nextGaussian();
+            Runnable step = () -> { dense.forward(x, true); dense.backward(dy, true); };
+            dense.sparse = false;
+            double full = timeMs(step, 200);
+            dense.sparse = true;
+            double sparse = timeMs(step, 200);
+            System.out.printf("  %-14s %12.3f %12.3f %8.2fx%n", (int) (zeros * 100) + "%", full, sparse, full / sparse);
+        }
+    }
+
+    // ----- Per-sample rank-1 dW updates vs one X^T*D product per 128-sample batch -----
+    static void batchGrads() {
+        Random rnd = new Random(2);
+        int bs = 128;
+        Dense dense = new Dense(2704, 256, rnd);
+        Conv2D conv = new Conv2D(1, 28, 28, 16, 3, 3, rnd);
+        double[][] xs = new double[bs][2704], dys = new double[bs][256];
+        double[][] imgs = new double[bs][784], dConv = new double[bs][conv.outSize()];
+        for (int s = 0; s < bs; s++) {
+            for (int i = 0; i < 2704; i++) xs[s][i] = rnd.nextDouble() < 0.5 ? 0.0 : rnd.nextDouble();
+            for (int j = 0; j < 256; j++) dys[s][j] = rnd.nextDouble() < DY_ZEROS ? 0.0 : rnd.nextGaussian();
+            for (int i = 0; i < 784; i++) imgs[s][i] = rnd.nextDouble();
+            for (int i = 0; i < dConv[s].length; i++) dConv[s][i] = rnd.nextDouble() < 0.7 ? 0.0 : rnd.nextGaussian();
+        }
+        System.out.println("Weight grads for one 128-sample batch (dx on, 50% zero inputs)");
+        System.out.printf("  %-22s %12s %12s %9s%n", "layer", "per-sample", "batched", "speedup");
+        Runnable denseBatch = () -> {
+            for (int s = 0; s < bs; s++) { dense.forward(xs[s], true); dense.backward(dys[s], true); }
+            dense.flushGrads();
+        };
+        dense.setBatchedGrads(false);
+        double a = timeMs(denseBatch, 20);
+        dense.setBatchedGrads(true);
+        double b = timeMs(denseBatch, 20);
+        System.out.printf("  %-22s %10.2fms %10.2fms %8.2fx%n", "Dense 2704x256", a, b, a / b);
+
+        Runnable convBatch = () -> {
+            for (int s = 0; s < bs; s++) { conv.forward(imgs[s], true); conv.backward(dConv[s], false); }
+            conv.flushGrads();
+        };
+        conv.setBatchedGrads(false);
+        a = timeMs(convBatch, 20);
+        conv.setBatchedGrads(true);
+        b = timeMs(convBatch, 20);
+        System.out.printf("  %-22s %10.2fms %10.2fms %8.2fx%n", "Conv2D 1->16 3x3", a, b, a / b);
+    }
+
+    // ----- Conv -> ReLU -> MaxPool as three layers vs the fused ConvReLUPool, per sample -----
+    static void convBlock() {
+        Random rnd = new Random(3);
+        Sequential split = new Sequential();
+        Conv2D conv = new Conv2D(1, 28, 28, 16, 3, 3, new Random(4));
+        split.add(conv).add(new ReLU()).add(new MaxPool(16, conv.outH, conv.outW));
+        ConvReLUPool fused = new ConvReLUPool(1, 28, 28, 16, 3, 3, new Random(4));
+        double[] img = new double[784], dy = new double[fused.outSize()];
+        for (int i = 0; i < img.length; i++) img[i] = rnd.nextDouble() < 0.8 ? 0.0 : rnd.nextDouble();
+        for (int i = 0; i < dy.length; i++) dy[i] = rnd.nextGaussian();
+
+        Runnable a = () -> {
+            double[] t = img;
+            for (Layer l : split.layers) t = l.forward(t, true);
+            double[] g = dy;
+            for (int i = split.layers.size() - 1; i >= 0; i--) g = split.layers.get(i).backward(g, i > 0);
+        };
+        Runnable b = () -> { fused.forward(img, true); fused.backward(dy, false); };
+        double ta = timeMs(a, 2000), tb = timeMs(b, 2000);
+        // per-sample buffers: conv/ReLU outputs, ReLU/pool input grads, pooled output and argmax
+        // vs pooled output, byte argmax and the compact grad list (position + value)
+        int n = fused.outSize();
+        long splitBytes = 8L * (4 * conv.outSize() + n) + 4L * n;
+        long fusedBytes = 8L * (2 * n) + 4L * n + n;
+        System.out.println("Conv 1->16 3x3 + ReLU + MaxPool fwd+bwd, per sample");
+        System.out.printf("  %-22s %10.3fms %8d KiB%n", "separate layers", ta, splitBytes / 1024);
+        System.out.printf("  %-22s %10.3fms %8d KiB  (%.2fx)%n", "fused", tb, fusedBytes / 1024, ta / tb);
+    }
+
+    // ----- Generic loops vs the KernelGen kernels for the DigitRecognizer shapes, forward only -----
+    static void specialized() {
+        Random rnd = new Random(5);
+        ConvReLUPool conv = new ConvReLUPool(1, 28, 28, 16, 3, 3, rnd);
+        Dense dense = new Dense(2704, 256, rnd);
+        double[] img = new double[784], x = new double[2704];
+        for (int i = 0; i < img.length; i++) img[i] = rnd.nextDouble() < 0.8 ? 0.0 : rnd.nextDouble();
+        for (int i = 0; i < x.length; i++) x[i] = rnd.nextDouble() < 0.5 ? 0.0 : rnd.nextDouble();
+        System.out.println("Forward, generic loops vs generated kernels" + (conv.kernel == null ? " (none generated!)" : ""));
+        System.out.printf("  %-22s %12s %12s %9s%n", "layer", "generic", "generated", "speedup");
+
+        ConvReLUPool.Kernel ck = conv.kernel;
+        conv.kernel = null;
+        double a = timeMs(() -> conv.forward(img, false), 5000);
+        conv.kernel = ck;
+        double b = timeMs(() -> conv.forward(img, false), 5000);
+        System.out.printf("  %-22s %10.4fms %10.4fms %8.2fx%n", "ConvReLUPool 1->16", a, b, a / b);
+
+        Dense.Kernel dk = dense.kernel;
+        dense.kernel = null;
+        a = timeMs(() -> dense.forward(x, false), 2000);
+        dense.kernel = dk;
+        b = timeMs(() -> dense.forward(x, false), 2000);
+        System.out.printf("  %-22s %10.4fms %10.4fms %8.2fx%n", "Dense 2704x256", a, b, a / b);
+    }
+}
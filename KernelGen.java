@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+// =========================
+// Shape-specialized kernel generator (run: java KernelGen [GeneratedKernels.java])
+// =========================
+/**
+ * Writes GeneratedKernels.java: forward kernels for the exact layer shapes of the shipped models,
+ * with every bound a literal and the conv taps fully unrolled, so the JIT sees constant trip counts
+ * it can unroll and vectorize. Layers whose shape has no generated kernel keep their generic loops.
+ * <p>
+ * Re-run after changing an architecture and commit the output. Each generated kernel does the same
+ * floating-point operations in the same order as the generic loop it replaces.
+ */
+public class KernelGen {
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "GeneratedKernels.java";
+        Set<String> convs = new LinkedHashSet<>(), denses = new LinkedHashSet<>();
+        collect(DigitRecognizer.buildModel(16, 256, 128, 0.0, new Random(0)), convs, denses);
+        collect(NotLearningDigitRecognizer.buildModel(8, 16, 256, 128, 0.0, new Random(0)), convs, denses);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// =========================\n");
+        sb.append("// GENERATED by KernelGen - do not edit; re-run `java KernelGen` after changing a model\n");
+        sb.append("// =========================\n");
+        sb.append("final class GeneratedKernels {\n");
+        sb.append("    // -Dnn.kernels=generic forces the generic loops, e.g. to compare timings\n");
+        sb.append("    static final boolean ENABLED = !\"generic\".equals(System.getProperty(\"nn.kernels\"));\n\n");
+        sb.append("    private GeneratedKernels() {}\n\n");
+
+        sb.append("    static ConvReLUPool.Kernel convReLUPool(int inC, int inH, int inW, int outC, int kH, int kW) {\n");
+        sb.append("        if (!ENABLED) return null;\n");
+        for (String c : convs) {
+            int[] s = parse(c);
+            sb.append(String.format("        if (inC == %d && inH == %d && inW == %d && outC == %d && kH == %d && kW == %d) return GeneratedKernels::%s;%n",
+                    s[0], s[1], s[2], s[3], s[4], s[5], convName(s)));
+        }
+        sb.append("        return null;\n    }\n\n");
+
+        sb.append("    static Dense.Kernel dense(int in, int out) {\n");
+        sb.append("        if (!ENABLED) return null;\n");
+        for (String d : denses) {
+            int[] s = parse(d);
+            sb.append(String.format("        if (in == %d && out == %d) return GeneratedKernels::%s;%n", s[0], s[1], denseName(s)));
+        }
+        sb.append("        return null;\n    }\n");
+
+        for (String c : convs) emitConv(sb, parse(c));
+        for (String d : denses) emitDense(sb, parse(d));
+        sb.append("}\n");
+
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))) {
+            pw.print(sb);
+        }
+        System.out.println("Wrote " + path + ": " + convs.size() + " conv, " + denses.size() + " dense kernels");
+    }
+
+    static void collect(Sequential model, Set<String> convs, Set<String> denses) {
+        for (Layer l : model.layers) {
+            if (l instanceof ConvReLUPool) {
+                Conv2D c = ((ConvReLUPool) l).conv;
+                convs.add(c.inC + "," + c.inH + "," + c.inW + "," + c.outC + "," + c.kH + "," + c.kW);
+            } else if (l instanceof Dense) {
+                denses.add(((Dense) l).in + "," + ((Dense) l).out);
+            }
+        }
+    }
+
+    static int[] parse(String key) {
+        String[] t = key.split(",");
+        int[] s = new int[t.length];
+        for (int i = 0; i < t.length; i++) s[i] = Integer.parseInt(t[i]);
+        return s;
+    }
+
+    static String convName(int[] s) {
+        return "convReLUPool_" + s[0] + "x" + s[1] + "x" + s[2] + "_" + s[3] + "x" + s[4] + "x" + s[5];
+    }
+
+    static String denseName(int[] s) { return "dense_" + s[0] + "x" + s[1]; }
+
+    // ----- fused conv + ReLU + 2x2 max-pool, see ConvReLUPool.forward -----
+    static void emitConv(StringBuilder sb, int[] s) {
+        int inC = s[0], inH = s[1], inW = s[2], outC = s[3], kH = s[4], kW = s[5];
+        int taps = kH * kW, poolH = (inH - kH + 1) / 2, poolW = (inW - kW + 1) / 2;
+        sb.append("\n    static void ").append(convName(s))
+          .append("(double[] x, double[] K, double[] B, double[] y, byte[] arg) {\n");
+        sb.append("        int o = 0;\n");
+        sb.append("        for (int f = 0; f < ").append(outC).append("; f++) {\n");
+        sb.append("            final int kf = f * ").append(inC * taps).append(";\n");
+        // one input channel: the taps stay in registers for the whole filter
+        if (inC == 1)
+            for (int t = 0; t < taps; t++) sb.append("            final double k").append(t).append(" = K[kf + ").append(t).append("];\n");
+        sb.append("            final double bias = B[f];\n");
+        sb.append("            for (int pi = 0; pi < ").append(poolH).append("; pi++) {\n");
+        sb.append("                for (int pj = 0; pj < ").append(poolW).append("; pj++) {\n");
+        sb.append("                    double s00 = bias, s01 = bias, s10 = bias, s11 = bias;\n");
+        String ind = "                    ";
+        if (inC == 1) {
+            sb.append(ind).append("final int xb = pi * ").append(2 * inW).append(" + pj * 2;\n");
+        } else {
+            sb.append(ind).append("for (int c = 0; c < ").append(inC).append("; c++) {\n");
+            ind = "                        ";
+            sb.append(ind).append("final int kc = kf + c * ").append(taps).append(";\n");
+            sb.append(ind).append("final int xb = c * ").append(inH * inW).append(" + pi * ").append(2 * inW).append(" + pj * 2;\n");
+        }
+        for (int ki = 0; ki < kH; ki++) {
+            for (int kj = 0; kj < kW; kj++) {
+                int t = ki * kW + kj, off = ki * inW + kj;
+                String k = inC == 1 ? "k" + t : "K[kc + " + t + "]";
+                if (inC > 1) { sb.append(ind).append("{ final double k = ").append(k).append(";\n"); k = "k"; }
+                String in2 = inC > 1 ? ind + "  " : ind;
+                sb.append(in2).append("s00 += x[xb + ").append(off).append("] * ").append(k).append("; ");
+                sb.append("s01 += x[xb + ").append(off + 1).append("] * ").append(k).append(";\n");
+                sb.append(in2).append("s10 += x[xb + ").append(off + inW).append("] * ").append(k).append("; ");
+                sb.append("s11 += x[xb + ").append(off + inW + 1).append("] * ").append(k).append(";");
+                sb.append(inC > 1 ? " }\n" : "\n");
+            }
+        }
+        if (inC > 1) sb.append("                    }\n");
+        sb.append("                    double mv = Double.NEGATIVE_INFINITY, a;\n");
+        sb.append("                    int code = 0;\n");
+        sb.append("                    if ((a = ReLU.relu(s00)) > mv) { mv = a; code = 0; }\n");
+        sb.append("                    if ((a = ReLU.relu(s01)) > mv) { mv = a; code = 1; }\n");
+        sb.append("                    if ((a = ReLU.relu(s10)) > mv) { mv = a; code = 2; }\n");
+        sb.append("                    if ((a = ReLU.relu(s11)) > mv) { mv = a; code = 3; }\n");
+        sb.append("                    y[o] = mv;\n");
+        sb.append("                    arg[o++] = (byte) code;\n");
+        sb.append("                }\n            }\n        }\n    }\n");
+    }
+
+    // ----- dense row accumulation y += x[i] * W[i, :], see Dense.forward -----
+    static void emitDense(StringBuilder sb, int[] s) {
+        int out = s[1];
+        sb.append("\n    static void ").append(denseName(s))
+          .append("(double[] x, int[] rows, int n, double[] W, double[] y) {\n");
+        sb.append("        for (int k = 0; k < n; k++) {\n");
+        sb.append("            final int i = rows == null ? k : rows[k];\n");
+        sb.append("            final double xi = x[i];\n");
+        sb.append("            final int base = i * ").append(out).append(";\n");
+        sb.append("            for (int j = 0; j < ").append(out).append("; j++) y[j] += xi * W[base + j];\n");
+        sb.append("        }\n    }\n");
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.Random;
+
+// =========================
+// Layer contract for Sequential models
+// =========================
+/**
+ * One stage of a {@link Sequential} model. A layer handles one sample at a time and keeps whatever it
+ * needs for backprop from the last forward call (the same convention the old ConvBlock caches used).
+ * Parameters and their gradient accumulators are flat row-major arrays returned in matching order.
+ */
+public interface Layer {
+
+    double[] forward(double[] x, boolean training);
+
+    /**
+     * Takes dLoss/dOutput, adds this sample's contribution to the grad accumulators and returns
+     * dLoss/dInput. When {@code propagate} is false (first layer) the input gradient may be skipped
+     * and null returned.
+     */
+    double[] backward(double[] dy, boolean propagate);
+
+    default double[][] params() { return new double[0][]; }
+
+    default double[][] grads() { return new double[0][]; }
+
+    /** Folds any per-batch stashed work into grads(); must run before grads are read. */
+    default void flushGrads() {}
+
+    /** With batched grads on, weight grads are deferred to one batch-level product in flushGrads(). */
+    default void setBatchedGrads(boolean batched) {}
+
+    /** Logical shape of each param, used when saving. Rank > 1 means weights (L2 applies), rank 1 a bias. */
+    default int[][] shapes() { return new int[0][]; }
+
+    /**
+     * A copy that shares this layer's parameter arrays but has its own caches and grad accumulators,
+     * so several threads can run forward/backward on one model. {@code rnd} seeds any layer randomness.
+     */
+    Layer replica(Random rnd);
+}
@@ -0,0 +1,67 @@
+// =========================
+// Learning-rate schedules (evaluated once per epoch)
+// =========================
+public interface LrSchedule {
+
+    /** Learning rate for a 1-based epoch, given the optimizer's starting lr. */
+    double lr(int epoch, double baseLr);
+
+    /** Called after each epoch's evaluation with the test accuracy (NaN without test data). */
+    default void onEpochEnd(int epoch, double acc) {}
+
+    /** Adaptive state for checkpoints; empty for the schedules that are a pure function of the epoch. */
+    default double[] state() { return new double[0]; }
+
+    default void restore(double[] state) {}
+
+    // Multiply by gamma every stepEpochs epochs
+    static class Step implements LrSchedule {
+        final int stepEpochs; final double gamma;
+        public Step(int stepEpochs, double gamma) { this.stepEpochs = stepEpochs; this.gamma = gamma; }
+        public double lr(int epoch, double baseLr) { return baseLr * Math.pow(gamma, (epoch - 1) / stepEpochs); }
+    }
+
+    // Cosine decay from baseLr to minLr over totalEpochs
+    static class Cosine implements LrSchedule {
+        final int totalEpochs; final double minLr;
+        public Cosine(int totalEpochs, double minLr) { this.totalEpochs = totalEpochs; this.minLr = minLr; }
+        public double lr(int epoch, double baseLr) {
+            double t = Math.min(1.0, (epoch - 1) / (double) Math.max(1, totalEpochs - 1));
+            return minLr + (baseLr - minLr) * 0.5 * (1 + Math.cos(Math.PI * t));
+        }
+    }
+
+    // Linear ramp over the first warmupEpochs, then hand over to another schedule
+    static class Warmup implements LrSchedule {
+        final int warmupEpochs; final LrSchedule after;
+        public Warmup(int warmupEpochs, LrSchedule after) { this.warmupEpochs = warmupEpochs; this.after = after; }
+        public double lr(int epoch, double baseLr) {
+            if (epoch <= warmupEpochs) return baseLr * epoch / warmupEpochs;
+            return after == null ? baseLr : after.lr(epoch - warmupEpochs, baseLr);
+        }
+        public void onEpochEnd(int epoch, double acc) { if (after != null) after.onEpochEnd(epoch, acc); }
+        public double[] state() { return after == null ? new double[0] : after.state(); }
+        public void restore(double[] state) { if (after != null) after.restore(state); }
+    }
+
+    // Multiply by factor when accuracy has not improved for patience epochs
+    static class ReduceOnPlateau implements LrSchedule {
+        final int patience; final double factor, minLr, minDelta;
+        double scale = 1.0, best = Double.NEGATIVE_INFINITY;
+        int badEpochs = 0;
+        public ReduceOnPlateau(int patience, double factor, double minLr) {
+            this.patience = patience; this.factor = factor; this.minLr = minLr; this.minDelta = 1e-4;
+        }
+        public double lr(int epoch, double baseLr) { return Math.max(minLr, baseLr * scale); }
+        public void onEpochEnd(int epoch, double acc) {
+            if (Double.isNaN(acc)) return;
+            if (acc > best + minDelta) { best = acc; badEpochs = 0; return; }
+            if (++badEpochs >= patience) { scale *= factor; badEpochs = 0; }
+        }
+        public double[] state() { return new double[]{scale, best, badEpochs}; }
+        public void restore(double[] s) {
+            if (s.length != 3) return;
+            scale = s[0]; best = s[1]; badEpochs = (int) s[2];
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.List;
+
+// =========================
+// Read-only, memory-mapped uint8 copy of a CSV dataset
+// =========================
+/**
+ * Converts a training CSV once into a flat uint8 cache file (next to the CSV, ".u8") and maps it
+ * read-only. Every consumer in the process, e.g. all trials of a sweep, then reads the same page
+ * cache instead of holding its own double[] copy. That is 784 bytes per image instead of 6 KB.
+ * {@link #inputs()} decodes an image to [0, 1] doubles on each get, into a fresh array, so callers
+ * may keep it like a loaded row. The cache is rebuilt when the CSV is newer.
+ * <p>
+ * Cache layout (little-endian): "NNU8", image count, pixels per image, labels (1 byte each),
+ * then the pixels.
+ */
+public class MappedImages {
+    static final int MAGIC = 0x4E4E5538;
+    static final int PIXELS = 784;
+
+    final int count;
+    final ByteBuffer pixels;   // count * PIXELS
+    final byte[] labels;
+
+    private MappedImages(ByteBuffer map) throws IOException {
+        if (map.getInt() != MAGIC || map.getInt(8) != PIXELS) throw new IOException("Not an image cache file");
+        count = map.getInt(4);
+        if ((long) count * PIXELS > Integer.MAX_VALUE) throw new IOException("Image cache too large to map: " + count + " images");
+        labels = new byte[count];
+        map.position(12);
+        map.get(labels);
+        pixels = map.slice();
+    }
+
+    /** Maps {@code csv + ".u8"}, building it first if it is missing or older than the CSV. */
+    public static MappedImages fromCsv(String csv) throws IOException {
+        Path src = Paths.get(csv), cache = Paths.get(csv + ".u8");
+        if (!Files.exists(cache) || Files.getLastModifiedTime(cache).compareTo(Files.getLastModifiedTime(src)) < 0)
+            build(csv, cache);
+        return new MappedImages(OffHeap.map(cache, FileChannel.MapMode.READ_ONLY, 0, Files.size(cache)));
+    }
+
+    // two passes over the CSV (labels, then pixels) keep memory flat for any dataset size
+    private static void build(String csv, Path cache) throws IOException {
+        int n = 0;
+        byte[] img = new byte[PIXELS];
+        java.io.ByteArrayOutputStream labelBytes = new java.io.ByteArrayOutputStream();
+        try (BulkScorer.CsvReader in = new BulkScorer.CsvReader(csv)) {
+            int label;
+            while ((label = in.read(img, 0)) != -2) {
+                if (label < 0 || label > 255) throw new IOException("Row " + n + " of " + csv + " has no label");
+                labelBytes.write(label);
+                n++;
+            }
+        }
+        Path tmp = Paths.get(cache + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp.toFile()), 1 << 16));
+             BulkScorer.CsvReader in = new BulkScorer.CsvReader(csv)) {
+            out.writeInt(Integer.reverseBytes(MAGIC));
+            out.writeInt(Integer.reverseBytes(n));
+            out.writeInt(Integer.reverseBytes(PIXELS));
+            labelBytes.writeTo(out);
+            for (int i = 0; i < n; i++) {
+                in.read(img, 0);
+                out.write(img);
+            }
+        }
+        Files.move(tmp, cache, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public int size() { return count; }
+
+    /** Image i as [0, 1] doubles, like {@link DigitRecognizer#loadInputs}. */
+    public double[] image(int i) {
+        double[] x = new double[PIXELS];
+        int off = i * PIXELS;
+        for (int p = 0; p < PIXELS; p++) x[p] = (pixels.get(off + p) & 0xFF) / 255.0;
+        return x;
+    }
+
+    public List<double[]> inputs() {
+        return new AbstractList<double[]>() {
+            @Override public double[] get(int i) { return image(i); }
+            @Override public int size() { return count; }
+        };
+    }
+
+    public List<Integer> labels() {
+        return new AbstractList<Integer>() {
+            @Override public Integer get(int i) { return labels[i] & 0xFF; }
+            @Override public int size() { return count; }
+        };
+    }
+}
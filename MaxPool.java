@@ -0,0 +1,56 @@
+// =========================
+// MaxPool 2x2, stride 2 (odd trailing rows/cols are dropped)
+// =========================
+public class MaxPool implements Layer {
+    final int channels, inH, inW;
+    final int outH, outW;
+
+    final double[] y;     // [C][outH][outW]
+    final int[] argMax;   // flat input index of each window's max
+    final double[] dx;
+
+    public MaxPool(int channels, int inH, int inW) {
+        this.channels = channels; this.inH = inH; this.inW = inW;
+        this.outH = inH / 2;
+        this.outW = inW / 2;
+        y = new double[channels * outH * outW];
+        argMax = new int[y.length];
+        dx = new double[channels * inH * inW];
+    }
+
+    public int outSize() { return y.length; }
+
+    @Override
+    public Layer replica(java.util.Random rnd) { return new MaxPool(channels, inH, inW); }
+
+    @Override
+    public double[] forward(double[] x, boolean training) {
+        int o = 0;
+        for (int c = 0; c < channels; c++) {
+            int base = c * inH * inW;
+            for (int i = 0; i < outH; i++) {
+                for (int j = 0; j < outW; j++) {
+                    double mv = Double.NEGATIVE_INFINITY;
+                    int arg = base + (2 * i) * inW + 2 * j;
+                    for (int di = 0; di < 2; di++) {
+                        for (int dj = 0; dj < 2; dj++) {
+                            int idx = base + (2 * i + di) * inW + 2 * j + dj;
+                            if (x[idx] > mv) { mv = x[idx]; arg = idx; }
+                        }
+                    }
+                    y[o] = mv;
+                    argMax[o++] = arg;
+                }
+            }
+        }
+        return y;
+    }
+
+    @Override
+    public double[] backward(double[] dy, boolean propagate) {
+        if (!propagate) return null;
+        java.util.Arrays.fill(dx, 0.0);
+        for (int o = 0; o < dy.length; o++) dx[argMax[o]] += dy[o];
+        return dx;
+    }
+}
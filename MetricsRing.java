@@ -0,0 +1,41 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// =========================
+// Lock-free single-producer / single-consumer ring of fixed-width double rows
+// =========================
+/**
+ * The training thread offers rows, one consumer thread polls them. Rows are copied into one flat
+ * double[] so publishing never allocates; when the consumer falls behind, new rows are dropped
+ * (and counted) instead of blocking the trainer.
+ */
+public class MetricsRing {
+    final int capacity, width;
+    final double[] slots;
+    final AtomicLong head = new AtomicLong();   // next row to write (producer only)
+    final AtomicLong tail = new AtomicLong();   // next row to read (consumer only)
+    volatile long dropped;
+
+    public MetricsRing(int capacity, int width) {
+        this.capacity = capacity;
+        this.width = width;
+        this.slots = new double[capacity * width];
+    }
+
+    /** Producer side. Copies {@code row} in; returns false (and counts a drop) when full. */
+    public boolean offer(double[] row) {
+        long h = head.get();
+        if (h - tail.get() >= capacity) { dropped++; return false; }
+        System.arraycopy(row, 0, slots, (int) (h % capacity) * width, width);
+        head.lazySet(h + 1);   // publish after the copy
+        return true;
+    }
+
+    /** Consumer side. Copies the oldest row into {@code out}; returns false when empty. */
+    public boolean poll(double[] out) {
+        long t = tail.get();
+        if (t >= head.get()) return false;
+        System.arraycopy(slots, (int) (t % capacity) * width, out, 0, width);
+        tail.lazySet(t + 1);
+        return true;
+    }
+}
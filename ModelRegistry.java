@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// =========================
+// Hot-reloading model registry for long-running inference
+// =========================
+/**
+ * Serves the newest weight file in a directory and swaps in new ones without a restart. A
+ * background thread watches the directory with a {@link WatchService}. When a matching file
+ * changes, the thread waits until the file has stopped growing, then loads and validates it. The
+ * validated model is warmed up and published through one volatile write.
+ * <p>
+ * Callers take a {@link Snapshot} per request with {@link #current()}, so a request that started
+ * on the old model finishes on it even if a swap happens meanwhile. Each snapshot gives every
+ * calling thread its own {@link Sequential#replica}, sharing that snapshot's parameters. A file
+ * that fails to load or validate is counted and logged, and the current model stays in place.
+ */
+public class ModelRegistry implements AutoCloseable {
+    /** Loads a weight file into a ready model; throws when the file does not fit. */
+    public interface Loader { Sequential load(String path) throws IOException; }
+
+    /** One loaded model version. Immutable once published. */
+    public static final class Snapshot {
+        public final Sequential model;
+        public final String source;
+        public final long version;
+        public final long loadMillis;
+        private final ThreadLocal<Sequential> local;
+
+        Snapshot(Sequential model, String source, long version, long loadMillis) {
+            this.model = model; this.source = source; this.version = version; this.loadMillis = loadMillis;
+            this.local = ThreadLocal.withInitial(() -> model.replica(Thread.currentThread().getId()));
+        }
+
+        /** Softmax output on this thread's replica; valid until the thread's next call. */
+        public double[] forward(double[] x) { return local.get().forward(x, false); }
+
+        public int predict(double[] x) { return local.get().predict(x); }
+    }
+
+    static final long QUIET_MS = 250;   // a file must sit unchanged this long before it is loaded
+    static final int WARMUP = 200;      // forwards on a new model before it goes live (JIT, caches)
+
+    final Path dir;
+    final PathMatcher matcher;
+    final Loader loader;
+    final Thread watcher;
+    final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final WatchService watch;
+    private volatile Snapshot current;
+    private volatile boolean running = true;
+
+    // validation probes: unlabelled ones only need sane outputs, labelled ones a minimum accuracy
+    private List<double[]> probes = new ArrayList<>();
+    private int[] probeLabels;
+    private double minProbeAccuracy;
+
+    // metrics
+    final AtomicLong loads = new AtomicLong(), failures = new AtomicLong(), swaps = new AtomicLong();
+    private volatile long lastLoadMillis = -1, lastSwapAt;
+    private volatile String lastError;
+
+    /** Watches {@code dir} for files matching {@code glob} (e.g. "weights*.{dat,bin}"). */
+    public ModelRegistry(Path dir, String glob, Loader loader) throws IOException {
+        this.dir = dir;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.loader = loader;
+        this.watch = dir.getFileSystem().newWatchService();
+        dir.register(watch, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        probes.add(new double[784]);   // blank canvas
+        watcher = new Thread(this::watchLoop, "model-registry");
+        watcher.setDaemon(true);
+    }
+
+    /** The shipped DigitRecognizer architecture, weights.dat or weights.bin. */
+    public ModelRegistry(Path dir, String glob) throws IOException { this(dir, glob, DigitRecognizer::loadModel); }
+
+    /** Labelled probes a new model must score at least {@code minAccuracy} on before it goes live. */
+    public ModelRegistry validateWith(List<double[]> xs, List<Integer> ys, double minAccuracy) {
+        probes = new ArrayList<>(xs);
+        probes.add(new double[784]);
+        probeLabels = ys.stream().mapToInt(Integer::intValue).toArray();
+        minProbeAccuracy = minAccuracy;
+        return this;
+    }
+
+    public ModelRegistry onSwap(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /** Loads the newest matching file now (if any), then starts watching. */
+    public ModelRegistry start() {
+        Path newest = newestMatch();
+        if (newest != null) reload(newest);
+        watcher.start();
+        return this;
+    }
+
+    /** The live model, or null before the first successful load. */
+    public Snapshot current() { return current; }
+
+    /** e.g. "version 3 (weights.bin), 4 loads, 1 failed, 3 swaps, last load 12 ms, 41 s since swap". */
+    public String metrics() {
+        Snapshot s = current;
+        String line = String.format(Locale.ROOT, "version %d (%s), %d loads, %d failed, %d swaps, last load %d ms, %s since swap",
+                s == null ? 0 : s.version, s == null ? "none" : s.source, loads.get(), failures.get(), swaps.get(),
+                lastLoadMillis, s == null ? "-" : (System.currentTimeMillis() - lastSwapAt) / 1000 + " s");
+        return lastError == null ? line : line + ", last error: " + lastError;
+    }
+
+    /** Loads, validates, warms up and publishes {@code file}; returns false (old model kept) on failure. */
+    public synchronized boolean reload(Path file) {
+        long t0 = System.nanoTime();
+        loads.incrementAndGet();
+        try {
+            Sequential model = loader.load(file.toString());
+            validate(model);
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            Snapshot next = new Snapshot(model, file.getFileName().toString(), swaps.get() + 1, ms);
+            for (int i = 0; i < WARMUP; i++) next.forward(probes.get(i % probes.size()));
+            lastLoadMillis = ms;
+            lastSwapAt = System.currentTimeMillis();
+            lastError = null;
+            swaps.incrementAndGet();
+            current = next;
+            for (Consumer<Snapshot> l : listeners) l.accept(next);
+            return true;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            lastError = file.getFileName() + ": " + (e.getMessage() != null ? e.getMessage() : e.toString());
+            System.err.println("Model registry kept version " + (current == null ? 0 : current.version) + ", rejected " + lastError);
+            return false;
+        }
+    }
+
+    private void validate(Sequential model) throws IOException {
+        for (double[] p : model.params())
+            for (double v : p) if (!Double.isFinite(v)) throw new IOException("non-finite weight");
+        int correct = 0;
+        for (int i = 0; i < probes.size(); i++) {
+            double[] out = model.forward(probes.get(i), false);
+            double sum = 0.0;
+            for (double v : out) {
+                if (!Double.isFinite(v)) throw new IOException("non-finite output");
+                sum += v;
+            }
+            if (Math.abs(sum - 1.0) > 1e-6) throw new IOException("outputs do not sum to 1");
+            if (probeLabels != null && i < probeLabels.length && model.predict(probes.get(i)) == probeLabels[i]) correct++;
+        }
+        if (probeLabels != null && probeLabels.length > 0 && correct < minProbeAccuracy * probeLabels.length)
+            throw new IOException(String.format(Locale.ROOT, "probe accuracy %.2f%% below %.2f%%",
+                    100.0 * correct / probeLabels.length, 100.0 * minProbeAccuracy));
+    }
+
+    // =========================
+    // Directory watch
+    // =========================
+    private void watchLoop() {
+        try {
+            while (running) {
+                WatchKey key = watch.take();
+                boolean changed = false;
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    if (ev.kind() == StandardWatchEventKinds.OVERFLOW) { changed = true; continue; }
+                    Path name = (Path) ev.context();
+                    if (matcher.matches(name)) changed = true;
+                }
+                key.reset();
+                if (!changed) continue;
+                // writers (ObjectOutputStream, cp) touch the file many times: wait for it to go quiet
+                Path newest;
+                do {
+                    Thread.sleep(QUIET_MS);
+                    WatchKey more = watch.poll();
+                    if (more != null) { more.pollEvents(); more.reset(); }
+                    newest = newestMatch();
+                } while (running && newest != null && System.currentTimeMillis() - Files.getLastModifiedTime(newest).toMillis() < QUIET_MS);
+                if (newest != null && running) reload(newest);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closing
+        } catch (IOException e) {
+            lastError = "watch failed: " + e.getMessage();
+            System.err.println("Model registry stopped watching " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private Path newestMatch() {
+        Path best = null;
+        long bestTime = Long.MIN_VALUE;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (!matcher.matches(p.getFileName()) || !Files.isRegularFile(p)) continue;
+                long t = Files.getLastModifiedTime(p).toMillis();
+                if (t > bestTime) { best = p; bestTime = t; }
+            }
+        } catch (IOException e) {
+            lastError = "cannot list " + dir + ": " + e.getMessage();
+        }
+        return best;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        watcher.interrupt();
+        watch.close();
+    }
+
+    // =========================
+    // Swap check under load (run: java ModelRegistry [dir] [seconds])
+    // =========================
+    // Scores synthetic digits in a loop and prints per-second latency; drop new weights into the
+    // directory while it runs and watch the version change without a latency spike.
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 0 ? args[0] : ".");
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        List<double[]> xs = new ArrayList<>();
+        List<Integer> ys = new ArrayList<>();
+        SyntheticDigits.generate(500, 3, xs, ys);
+
+        try (ModelRegistry registry = new ModelRegistry(dir, "weights*.{dat,bin}")) {
+            registry.onSwap(s -> System.out.printf("swap -> version %d from %s (loaded in %d ms)%n", s.version, s.source, s.loadMillis));
+            registry.start();
+            long end = System.currentTimeMillis() + seconds * 1000L;
+            long[] lat = new long[1 << 16];
+            int i = 0;
+            while (System.currentTimeMillis() < end) {
+                long windowEnd = System.currentTimeMillis() + 1000;
+                int n = 0;
+                long maxVersion = 0;
+                while (System.currentTimeMillis() < windowEnd && n < lat.length) {
+                    Snapshot s = registry.current();
+                    if (s == null) { Thread.sleep(50); continue; }
+                    long t0 = System.nanoTime();
+                    s.predict(xs.get(i++ % xs.size()));
+                    lat[n++] = System.nanoTime() - t0;
+                    maxVersion = Math.max(maxVersion, s.version);
+                }
+                if (n == 0) { System.out.println("no model yet"); continue; }
+                Arrays.sort(lat, 0, n);
+                System.out.printf(Locale.ROOT, "%5d req/s  p50 %.3f ms  p99 %.3f ms  max %.3f ms  version %d%n",
+                        n, lat[n / 2] / 1e6, lat[(int) (n * 0.99)] / 1e6, lat[n - 1] / 1e6, maxVersion);
+            }
+            System.out.println(registry.metrics());
+        }
+    }
+}
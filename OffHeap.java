@@ -0,0 +1,34 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// =========================
+// Memory-mapped file regions (raw weight file, uint8 image cache)
+// =========================
+/**
+ * Maps file regions outside the Java heap for the raw weight file ({@link Sequential#saveMapped})
+ * and the uint8 image cache ({@link MappedImages}). Mapped files are little-endian, and data
+ * sections start on an {@link #ALIGN}-byte boundary. Weights are bulk-copied from the mapping into
+ * the layers' double[] params on load, because every layer kernel indexes plain arrays.
+ */
+public final class OffHeap {
+    static final int ALIGN = 64;   // cache line / AVX-512
+
+    private OffHeap() {}
+
+    /**
+     * Maps {@code bytes} bytes of a file starting at {@code offset}; READ_WRITE grows the file as
+     * needed. The mapping stays valid after the channel is closed.
+     */
+    public static ByteBuffer map(Path file, FileChannel.MapMode mode, long offset, long bytes) throws IOException {
+        StandardOpenOption[] opts = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        try (FileChannel ch = FileChannel.open(file, opts)) {
+            return ch.map(mode, offset, bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// =========================
+// Optimizer base: flat state buffers + one fused update pass
+// =========================
+/**
+ * Binds to a model's parameter/grad arrays once and keeps all per-parameter state (momentum,
+ * second moments) in flat double buffers indexed by a global offset. {@link #step(int)} walks the
+ * parameters in fixed-size chunks and applies batch averaging, weight decay and the update rule in a
+ * single pass per element; with {@code parallel} set the chunks run on the common ForkJoin pool.
+ */
+public abstract class Optimizer {
+    static final int CHUNK = 1 << 14;
+
+    double lr;
+    double weightDecay;        // L2 on weights (rank > 1 params), biases are never decayed
+    boolean parallel = false;
+    long t = 0;                // number of steps taken (Adam bias correction)
+
+    double[][] params, grads;
+    boolean[] decays;
+    int[] offsets;             // start of each param in the flat state buffers
+    int total;
+    int[][] chunks;            // {param index, from, to}
+    double[][] state;          // [buffer][total]
+
+    protected Optimizer(double lr, double weightDecay) {
+        this.lr = lr;
+        this.weightDecay = weightDecay;
+    }
+
+    public void bind(Sequential model) {
+        List<double[]> ps = model.params(), gs = model.grads();
+        List<int[]> ss = model.shapes();
+        int n = ps.size();
+        params = ps.toArray(new double[n][]);
+        grads = gs.toArray(new double[n][]);
+        decays = new boolean[n];
+        offsets = new int[n];
+        total = 0;
+        List<int[]> cs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            decays[i] = ss.get(i).length > 1;
+            offsets[i] = total;
+            total += params[i].length;
+            for (int from = 0; from < params[i].length; from += CHUNK)
+                cs.add(new int[]{i, from, Math.min(from + CHUNK, params[i].length)});
+        }
+        chunks = cs.toArray(new int[0][]);
+        int k = stateBuffers();
+        state = new double[k][total];
+    }
+
+    /** Applies one update from grads summed over {@code batchSize} samples. */
+    public void step(int batchSize) {
+        t++;
+        double invBs = 1.0 / Math.max(1, batchSize);
+        if (parallel) IntStream.range(0, chunks.length).parallel().forEach(c -> runChunk(chunks[c], invBs));
+        else for (int[] c : chunks) runChunk(c, invBs);
+    }
+
+    private void runChunk(int[] c, double invBs) {
+        int n = c[0], from = c[1], to = c[2];
+        double decay = decays[n] ? weightDecay : 0.0;
+        update(params[n], grads[n], state, offsets[n], from, to, invBs, decay);
+    }
+
+    /** Number of flat state buffers (momentum, moments, ...) this rule keeps per parameter. */
+    protected abstract int stateBuffers();
+
+    /** Fused kernel for p[from..to); state for p[i] lives at s[buffer][off + i]. */
+    protected abstract void update(double[] p, double[] g, double[][] s, int off, int from, int to,
+                                   double invBs, double decay);
+
+    // =========================
+    // Checkpoint state
+    // =========================
+    public void writeState(ObjectOutputStream out) throws IOException {
+        out.writeLong(t);
+        out.writeObject(state);
+    }
+
+    /** Restores the state, or returns false and changes nothing when it has another shape. */
+    public boolean readState(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        long savedT = in.readLong();
+        double[][] saved = (double[][]) in.readObject();
+        if (saved.length != stateBuffers()) return false;
+        for (double[] s : saved) if (s.length != total) return false;
+        t = savedT;
+        for (int b = 0; b < saved.length; b++) System.arraycopy(saved[b], 0, state[b], 0, total);
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// =========================
+// Batched inference with top-k output
+// =========================
+/**
+ * Scores many images at once for bulk jobs. Every worker thread runs its own inference
+ * {@link Sequential#replica} over a contiguous slice of the batch. The replicas share the model's
+ * parameter arrays, so reload weights into the model and the predictor sees them. Results are flat
+ * primitive arrays: row i of top-k lives at [i * k, (i + 1) * k), best first. Nothing from the
+ * forward pass (activations, masks) is exposed.
+ * <p>
+ * Thread-safe: each call checks out a set of replicas and scratch buffers for its duration, so
+ * concurrent callers never share activations. A new set is built when all are in use, and sets
+ * are kept for reuse, so there are as many as the peak number of concurrent callers.
+ */
+public class Predictor implements AutoCloseable {
+    /** Argmax and top-k per image. */
+    public static final class Result {
+        public final int n, k;
+        public final int[] argmax;      // [n]
+        public final int[] topLabels;   // [n * k]
+        public final float[] topProbs;  // [n * k]
+
+        Result(int n, int k) {
+            this.n = n; this.k = k;
+            argmax = new int[n];
+            topLabels = new int[n * k];
+            topProbs = new float[n * k];
+        }
+    }
+
+    static final int PIXELS = 784;
+    static final int MIN_SLICE = 64;   // smaller slices are not worth a task
+
+    /** Replicas and scratch for one call: one replica per worker slice. */
+    private static final class Lane {
+        final Sequential[] replicas;
+        final double[][] inputs;       // per-replica conversion buffer
+        final double[][] top;          // per-replica top-k scratch
+
+        Lane(Sequential model, int threads, long seed) {
+            replicas = new Sequential[threads];
+            inputs = new double[threads][PIXELS];
+            top = new double[threads][0];
+            for (int t = 0; t < threads; t++) replicas[t] = model.replica(seed + t);
+        }
+    }
+
+    final Sequential model;
+    final int threads;
+    final ExecutorService pool;
+    final int classes;
+    private final ConcurrentLinkedQueue<Lane> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicLong lanes = new AtomicLong();
+
+    public Predictor(Sequential model, int threads) {
+        this.model = model;
+        this.threads = threads = Math.max(1, threads);
+        Lane first = newLane();
+        classes = first.replicas[0].forward(first.inputs[0], false).length;
+        idle.add(first);
+        pool = threads == 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+            Thread th = new Thread(r, "predict-worker");
+            th.setDaemon(true);
+            return th;
+        });
+    }
+
+    /** Images as rows of 784 floats in [0, 1]. */
+    public Result predictBatch(float[][] images, int k) {
+        return run(images.length, k, (i, x) -> {
+            float[] img = images[i];
+            for (int p = 0; p < PIXELS; p++) x[p] = img[p];
+        });
+    }
+
+    /** {@code n} uint8 images packed back to back, 784 bytes each (0 = background, 255 = ink). */
+    public Result predictBatch(byte[] pixels, int n, int k) {
+        if (pixels.length < (long) n * PIXELS) throw new IllegalArgumentException("Buffer holds fewer than " + n + " images");
+        return run(n, k, (i, x) -> {
+            int off = i * PIXELS;
+            for (int p = 0; p < PIXELS; p++) x[p] = (pixels[off + p] & 0xFF) / 255.0;
+        });
+    }
+
+    private interface Loader { void load(int i, double[] x); }
+
+    private Lane newLane() { return new Lane(model, threads, lanes.getAndIncrement() * threads); }
+
+    private Result run(int n, int k, Loader loader) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        k = Math.min(k, classes);
+        Result res = new Result(n, k);
+        Lane lane = idle.poll();
+        if (lane == null) lane = newLane();
+        int slices = Math.min(threads, Math.max(1, n / MIN_SLICE));
+        if (slices == 1 || pool == null) {
+            score(lane, 0, 0, n, loader, res);
+            idle.add(lane);
+            return res;
+        }
+        List<Callable<Void>> jobs = new ArrayList<>();
+        final Lane l = lane;
+        for (int t = 0; t < slices; t++) {
+            final int tid = t, from = (int) ((long) n * t / slices), to = (int) ((long) n * (t + 1) / slices);
+            jobs.add(() -> { score(l, tid, from, to, loader, res); return null; });
+        }
+        try {
+            for (Future<Void> f : pool.invokeAll(jobs)) f.get();
+        } catch (InterruptedException e) {
+            // cancelled tasks may still be running on the lane: drop it rather than reuse it
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scoring", e);
+        } catch (ExecutionException e) {
+            idle.add(lane);
+            throw new IllegalStateException("Scoring failed", e.getCause());
+        }
+        idle.add(lane);
+        return res;
+    }
+
+    private static void score(Lane lane, int tid, int from, int to, Loader loader, Result res) {
+        Sequential m = lane.replicas[tid];
+        double[] x = lane.inputs[tid];
+        int k = res.k;
+        if (lane.top[tid].length < k) lane.top[tid] = new double[k];
+        double[] best = lane.top[tid];
+        for (int i = from; i < to; i++) {
+            loader.load(i, x);
+            double[] probs = m.forward(x, false);
+            topK(probs, k, res.topLabels, i * k, best);
+            for (int j = 0; j < k; j++) res.topProbs[i * k + j] = (float) best[j];
+            res.argmax[i] = res.topLabels[i * k];
+        }
+    }
+
+    /**
+     * Writes the labels of the {@code k} largest entries of {@code probs} into labels[off..off+k)
+     * and their values into values[0..k), best first; ties keep the lower label first, like
+     * {@link Sequential#predict}. Insertion into the k slots, no boxing.
+     */
+    public static void topK(double[] probs, int k, int[] labels, int off, double[] values) {
+        k = Math.min(k, probs.length);
+        int filled = 0;
+        for (int c = 0; c < probs.length; c++) {
+            double p = probs[c];
+            if (filled == k && !(p > values[k - 1])) continue;
+            int j = filled < k ? filled++ : k - 1;
+            while (j > 0 && p > values[j - 1]) {
+                labels[off + j] = labels[off + j - 1];
+                values[j] = values[j - 1];
+                j--;
+            }
+            labels[off + j] = c;
+            values[j] = p;
+        }
+    }
+
+    @Override
+    public void close() { if (pool != null) pool.shutdownNow(); }
+}
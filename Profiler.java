@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// =========================
+// Per-phase wall-clock profiler (enable with -Dnn.profile=true)
+// =========================
+/**
+ * Accumulates System.nanoTime deltas per named phase. ENABLED is a static final constant, so when
+ * profiling is off every start()/stop() call folds away in the JIT and costs nothing.
+ * Time is collected per training step (batch) so the epoch report can show percentiles as well as
+ * totals. The counters are single-threaded, so only the owner records. A thread becomes the owner
+ * with {@link #claim()}. The training entry points claim on their main thread, so data loading is
+ * included. {@link Trainer#train} claims for its own thread and releases when it returns. When
+ * trainers run side by side (parallel Sweep trials), the first one to start holds the profiler, and
+ * the next one to start after it releases takes over. Calls from every other thread, such as
+ * Hogwild workers and eval threads, are no-ops, so they cannot race on the arrays.
+ */
+public final class Profiler {
+    static final boolean ENABLED = Boolean.getBoolean("nn.profile");
+    private static volatile Thread owner;   // set by claim(); nothing is recorded while null
+
+    private static final List<String> names = new ArrayList<>();
+    private static long[] epochNanos = new long[0];  // per phase, current epoch
+    private static long[] stepNanos = new long[0];   // per phase, current step
+    private static long[][] steps = new long[0][];   // per phase, one entry per finished step
+    private static int stepCount = 0;
+
+    private Profiler() {}
+
+    /**
+     * Makes the calling thread the recorder if nobody holds the profiler (or its holder has died)
+     * and clears the counters. Returns true only when this call took ownership, so the caller knows
+     * whether to {@link #release()}.
+     */
+    public static synchronized boolean claim() {
+        if (!ENABLED || owner == Thread.currentThread() || (owner != null && owner.isAlive())) return false;
+        owner = Thread.currentThread();
+        reset();
+        return true;
+    }
+
+    /** Gives up ownership if the calling thread holds it; a half-finished epoch is dropped. */
+    public static synchronized void release() {
+        if (owner != Thread.currentThread()) return;
+        owner = null;
+        reset();
+    }
+
+    private static void reset() {
+        Arrays.fill(epochNanos, 0);
+        Arrays.fill(stepNanos, 0);
+        stepCount = 0;
+    }
+
+    /** Registers (or looks up) a phase and returns its id. */
+    public static synchronized int phase(String name) {
+        int id = names.indexOf(name);
+        if (id >= 0) return id;
+        names.add(name);
+        int n = names.size();
+        epochNanos = Arrays.copyOf(epochNanos, n);
+        stepNanos = Arrays.copyOf(stepNanos, n);
+        steps = Arrays.copyOf(steps, n);
+        steps[n - 1] = new long[Math.max(64, stepCount)];
+        return n - 1;
+    }
+
+    // constant false when profiling is off, so the JIT still removes the calls
+    private static boolean recording() { return ENABLED && owner == Thread.currentThread(); }
+
+    public static long start() { return recording() ? System.nanoTime() : 0L; }
+
+    public static void stop(int phase, long t0) {
+        if (!recording()) return;
+        long dt = System.nanoTime() - t0;
+        epochNanos[phase] += dt;
+        stepNanos[phase] += dt;
+    }
+
+    /** Closes the current step (batch) and files its per-phase times for percentiles. */
+    public static void endStep() {
+        if (!recording()) return;
+        for (int p = 0; p < steps.length; p++) {
+            if (steps[p].length <= stepCount) steps[p] = Arrays.copyOf(steps[p], steps[p].length * 2);
+            steps[p][stepCount] = stepNanos[p];
+            stepNanos[p] = 0;
+        }
+        stepCount++;
+    }
+
+    /** Prints the epoch's breakdown (total, share, per-step p50/p90/p99) and resets. */
+    public static void reportEpoch(int epoch) {
+        if (!recording()) return;
+        long total = 0;
+        for (long t : epochNanos) total += t;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Epoch %d profile (%d steps, %.1f ms total)%n", epoch, stepCount, total / 1e6));
+        sb.append(String.format("  %-26s %10s %7s %10s %10s %10s%n", "phase", "ms", "%", "p50 ms", "p90 ms", "p99 ms"));
+        for (int p = 0; p < names.size(); p++) {
+            if (epochNanos[p] == 0) continue;
+            // percentiles over the steps this phase actually ran in
+            long[] s = Arrays.stream(steps[p], 0, stepCount).filter(t -> t > 0).sorted().toArray();
+            sb.append(String.format("  %-26s %10.1f %6.1f%% %10.3f %10.3f %10.3f%n", names.get(p),
+                    epochNanos[p] / 1e6, 100.0 * epochNanos[p] / Math.max(1, total),
+                    pct(s, 0.50) / 1e6, pct(s, 0.90) / 1e6, pct(s, 0.99) / 1e6));
+        }
+        System.out.print(sb);
+        reset();
+    }
+
+    private static long pct(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(q * sorted.length) - 1)];
+    }
+}
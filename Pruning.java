@@ -0,0 +1,174 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// =========================
+// Magnitude pruning of Dense layers + CSR export
+// =========================
+/**
+ * Zeroes the smallest-magnitude weights of every {@link Dense} layer, each layer pruned to the
+ * same fraction, and remembers which ones it zeroed. Fine-tune with {@code Trainer.pruning} set:
+ * the trainer calls {@link #apply()} after every optimizer step so the pruned weights stay at
+ * zero. Calling {@link #prune} again on the fine-tuned model raises the sparsity step by step.
+ * {@link #toSparse} then swaps each Dense for a {@link SparseDense} holding only the survivors.
+ */
+public class Pruning {
+    final List<Dense> layers = new ArrayList<>();
+    final List<long[]> masks = new ArrayList<>();   // set bit = pruned
+
+    public Pruning(Sequential model) {
+        for (Layer l : model.layers)
+            if (l instanceof Dense) {
+                Dense d = (Dense) l;
+                layers.add(d);
+                masks.add(new long[(d.W.length + 63) >>> 6]);
+            }
+    }
+
+    /**
+     * Prunes each Dense layer to {@code sparsity} (fraction of weights that are zero). Weights
+     * already pruned stay pruned.
+     */
+    public void prune(double sparsity) {
+        for (int l = 0; l < layers.size(); l++) {
+            double[] W = layers.get(l).W;
+            long[] mask = masks.get(l);
+            int target = (int) Math.round(sparsity * W.length);
+            double[] mag = new double[W.length];
+            for (int i = 0; i < W.length; i++) mag[i] = Math.abs(W[i]);
+            double[] sorted = mag.clone();
+            Arrays.sort(sorted);
+            double threshold = target > 0 ? sorted[target - 1] : -1.0;
+            int pruned = 0;
+            for (int i = 0; i < W.length; i++) if ((mask[i >>> 6] & (1L << i)) != 0) pruned++;
+            // below the threshold go; ties at it go in index order until the target is met
+            for (int i = 0; i < W.length; i++) {
+                if ((mask[i >>> 6] & (1L << i)) != 0) continue;
+                if (mag[i] < threshold || (mag[i] == threshold && pruned < target)) {
+                    mask[i >>> 6] |= 1L << i;
+                    pruned++;
+                }
+            }
+        }
+        apply();
+    }
+
+    /** Zeroes every pruned weight again; run after each optimizer step. */
+    public void apply() {
+        for (int l = 0; l < layers.size(); l++) {
+            double[] W = layers.get(l).W;
+            long[] mask = masks.get(l);
+            for (int w = 0; w < mask.length; w++) {
+                long bits = mask[w];
+                while (bits != 0) {
+                    W[(w << 6) + Long.numberOfTrailingZeros(bits)] = 0.0;
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /** Fraction of Dense weights that are pruned. */
+    public double sparsity() {
+        long pruned = 0, total = 0;
+        for (int l = 0; l < layers.size(); l++) {
+            for (long m : masks.get(l)) pruned += Long.bitCount(m);
+            total += layers.get(l).W.length;
+        }
+        return total > 0 ? pruned / (double) total : 0.0;
+    }
+
+    /**
+     * CSR copy of {@code model}: Dense layers become {@link SparseDense}, the rest are replicas sharing
+     * params. It runs inference, and it can also be trained further with its sparsity pattern fixed.
+     */
+    public static Sequential toSparse(Sequential model) {
+        Random rnd = new Random(0);
+        Sequential s = new Sequential();
+        for (Layer l : model.layers) s.add(l instanceof Dense ? SparseDense.of((Dense) l) : l.replica(rnd));
+        s.numClasses = model.numClasses;
+        return s;
+    }
+
+    // =========================
+    // Sparse weight file
+    // =========================
+    // "NNCS", version, layer count, then per layer: a SparseDense writes 'S', in, out, nnz, the
+    // rowPtr ints, col chars and value doubles, then its bias; every other param is written as
+    // 'D', int length, doubles. Big-endian (DataOutputStream).
+    static final int CSR_MAGIC = 0x4E4E4353, CSR_VERSION = 1;
+
+    public static void saveSparse(Sequential sparse, String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            out.writeInt(CSR_MAGIC);
+            out.writeInt(CSR_VERSION);
+            out.writeInt(sparse.layers.size());
+            for (Layer l : sparse.layers) {
+                if (l instanceof SparseDense) {
+                    SparseDense d = (SparseDense) l;
+                    out.writeByte('S');
+                    out.writeInt(d.in); out.writeInt(d.out); out.writeInt(d.nnz());
+                    for (int p : d.rowPtr) out.writeInt(p);
+                    for (char c : d.cols) out.writeChar(c);
+                    for (double v : d.vals) out.writeDouble(v);
+                    writeDense(out, d.b);
+                } else {
+                    for (double[] p : l.params()) writeDense(out, p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a {@link #saveSparse} file into {@code arch}, the dense model it was pruned from
+     * (built with the same constructor arguments), and returns its sparse inference copy.
+     */
+    public static Sequential loadSparse(String filename, Sequential arch) throws IOException {
+        Random rnd = new Random(0);
+        Sequential s = new Sequential();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16))) {
+            if (in.readInt() != CSR_MAGIC || in.readInt() != CSR_VERSION) throw new IOException("Not a sparse weight file: " + filename);
+            if (in.readInt() != arch.layers.size()) throw new IOException("Sparse file does not match model: layer count differs");
+            for (Layer l : arch.layers) {
+                if (l instanceof Dense) {
+                    Dense d = (Dense) l;
+                    if (in.readByte() != 'S' || in.readInt() != d.in || in.readInt() != d.out)
+                        throw new IOException("Sparse file does not match model at " + d.in + "x" + d.out + " layer");
+                    int nnz = in.readInt();
+                    int[] rowPtr = new int[d.in + 1];
+                    char[] cols = new char[nnz];
+                    double[] vals = new double[nnz];
+                    for (int i = 0; i <= d.in; i++) rowPtr[i] = in.readInt();
+                    for (int k = 0; k < nnz; k++) cols[k] = in.readChar();
+                    for (int k = 0; k < nnz; k++) vals[k] = in.readDouble();
+                    double[] b = new double[d.out];
+                    readDense(in, b);
+                    s.add(new SparseDense(d.in, d.out, rowPtr, cols, vals, b));
+                } else {
+                    for (double[] p : l.params()) readDense(in, p);
+                    s.add(l.replica(rnd));
+                }
+            }
+        }
+        return s;
+    }
+
+    private static void writeDense(DataOutputStream out, double[] p) throws IOException {
+        out.writeByte('D');
+        out.writeInt(p.length);
+        for (double v : p) out.writeDouble(v);
+    }
+
+    private static void readDense(DataInputStream in, double[] p) throws IOException {
+        if (in.readByte() != 'D' || in.readInt() != p.length) throw new IOException("Sparse file does not match model: param size differs");
+        for (int i = 0; i < p.length; i++) p[i] = in.readDouble();
+    }
+}
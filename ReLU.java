@@ -0,0 +1,47 @@
+// =========================
+// ReLU activation
+// =========================
+public class ReLU implements Layer {
+    double[] pre;   // input of the last forward call
+    double[] y, dx;
+    boolean tracking;   // set by TrainingMetrics on sampled batches
+    boolean[] fired;
+
+    public static double relu(double x) { return Math.max(0, x); }
+    public static double reluDerivativeFromPre(double pre) { return pre > 0 ? 1.0 : 0.0; }
+
+    @Override
+    public double[] forward(double[] x, boolean training) {
+        pre = x;
+        if (y == null || y.length != x.length) { y = new double[x.length]; dx = new double[x.length]; }
+        for (int i = 0; i < x.length; i++) y[i] = relu(x[i]);
+        if (tracking) {
+            if (fired == null) fired = new boolean[x.length];
+            for (int i = 0; i < x.length; i++) if (x[i] > 0) fired[i] = true;
+        }
+        return y;
+    }
+
+    @Override
+    public Layer replica(java.util.Random rnd) { return new ReLU(); }
+
+    void startTracking() { tracking = true; fired = null; }
+
+    /** Fraction of units that never fired since startTracking(); stops tracking. */
+    double stopTracking() {
+        tracking = false;
+        if (fired == null) return Double.NaN;
+        int dead = 0;
+        for (boolean f : fired) if (!f) dead++;
+        double frac = dead / (double) fired.length;
+        fired = null;
+        return frac;
+    }
+
+    @Override
+    public double[] backward(double[] dy, boolean propagate) {
+        if (!propagate) return null;
+        for (int i = 0; i < dy.length; i++) dx[i] = dy[i] * reluDerivativeFromPre(pre[i]);
+        return dx;
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// =========================
+// Ring all-reduce over TCP
+// =========================
+/**
+ * Rank r listens on basePort + r, connects to rank (r + 1) % world and accepts from rank r - 1.
+ * {@link #allReduce(double[])} sums a buffer across all ranks in place with the bandwidth-optimal
+ * reduce-scatter + all-gather schedule: 2 (world - 1) steps, each moving 1/world of the buffer.
+ * Each step sends on a helper thread while receiving, so full socket buffers can't deadlock the ring.
+ */
+public class RingAllReduce implements AutoCloseable {
+    final int rank, world;
+    Socket toNext, fromPrev;
+    DataOutputStream out;
+    DataInputStream in;
+    final ExecutorService sender;
+    byte[] sendBytes = new byte[0], recvBytes = new byte[0];
+    double[] recv = new double[0];
+
+    public RingAllReduce(int rank, int world, String host, int basePort) throws IOException {
+        this.rank = rank;
+        this.world = world;
+        if (world == 1) { sender = null; return; }
+        sender = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "allreduce-send-" + rank);
+            t.setDaemon(true);
+            return t;
+        });
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getByName(host), basePort + rank));
+            // bind first, then connect: the connect completes from the peer's backlog, so the ring can't deadlock
+            toNext = connectWithRetry(host, basePort + (rank + 1) % world, 30_000);
+            fromPrev = server.accept();
+        }
+        toNext.setTcpNoDelay(true);
+        fromPrev.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(toNext.getOutputStream(), 1 << 16));
+        in = new DataInputStream(new BufferedInputStream(fromPrev.getInputStream(), 1 << 16));
+    }
+
+    private static Socket connectWithRetry(String host, int port, long timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) throw new IOException("Could not reach ring peer on port " + port, e);
+                try { Thread.sleep(50); } catch (InterruptedException ie) { throw new IOException("Interrupted while connecting", ie); }
+            }
+        }
+    }
+
+    public int rank() { return rank; }
+    public int world() { return world; }
+
+    /** Sums {@code buf} element-wise across all ranks; every rank ends up with the same result. */
+    public void allReduce(double[] buf) throws IOException {
+        if (world == 1) return;
+        int n = buf.length;
+        int maxChunk = (n + world - 1) / world;
+        if (recv.length < maxChunk) {
+            recv = new double[maxChunk];
+            sendBytes = new byte[maxChunk * 8];
+            recvBytes = new byte[maxChunk * 8];
+        }
+        // reduce-scatter: after world-1 steps rank r owns the full sum of chunk (r + 1) % world
+        for (int s = 0; s < world - 1; s++) {
+            int sendC = Math.floorMod(rank - s, world), recvC = Math.floorMod(rank - s - 1, world);
+            exchange(buf, sendC, recvC, n);
+            int from = start(recvC, n), to = start(recvC + 1, n);
+            for (int i = from; i < to; i++) buf[i] += recv[i - from];
+        }
+        // all-gather: pass the finished chunks around the ring
+        for (int s = 0; s < world - 1; s++) {
+            int sendC = Math.floorMod(rank - s + 1, world), recvC = Math.floorMod(rank - s, world);
+            exchange(buf, sendC, recvC, n);
+            int from = start(recvC, n), to = start(recvC + 1, n);
+            System.arraycopy(recv, 0, buf, from, to - from);
+        }
+    }
+
+    private int start(int chunk, int n) { return (int) ((long) chunk * n / world); }
+
+    private void exchange(double[] buf, int sendC, int recvC, int n) throws IOException {
+        int sFrom = start(sendC, n), sLen = start(sendC + 1, n) - sFrom;
+        int rLen = start(recvC + 1, n) - start(recvC, n);
+        ByteBuffer.wrap(sendBytes, 0, sLen * 8).asDoubleBuffer().put(buf, sFrom, sLen);
+        Future<?> sent = sender.submit(() -> {
+            out.write(sendBytes, 0, sLen * 8);
+            out.flush();
+            return null;
+        });
+        in.readFully(recvBytes, 0, rLen * 8);
+        ByteBuffer.wrap(recvBytes, 0, rLen * 8).asDoubleBuffer().get(recv, 0, rLen);
+        try {
+            sent.get();
+        } catch (Exception e) {
+            throw new IOException("All-reduce send failed", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (world == 1) return;
+        sender.shutdownNow();
+        toNext.close();
+        fromPrev.close();
+    }
+}
@@ -0,0 +1,355 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// =========================
+// Run configuration: defaults < config file < command line
+// =========================
+/**
+ * Every setting of a training run as a flat, dotted key ("optimizer.lr", "data.train"). A trainer
+ * declares its keys with their defaults. {@code --config FILE} then loads a .properties file or a
+ * JSON object (nested objects flatten to dotted keys), and any {@code --key value} on the command
+ * line wins over both. A key the trainer did not declare is an error, so a typo cannot silently
+ * fall back to a default.
+ * <p>
+ * {@link #configure(Trainer)} applies the optimizer, schedule, early stopping, checkpointing and
+ * metrics settings to a Trainer; {@link #load} reads a dataset in the configured format.
+ */
+public class RunConfig {
+    final Map<String, String> values = new LinkedHashMap<>();   // declaration order, for describe()
+    final Map<String, String> origin = new LinkedHashMap<>();   // key -> "file" or "cli" when overridden
+
+    /** Settings shared by the trainers, with DigitRecognizer's values; callers {@link #set} the rest. */
+    public static RunConfig trainingDefaults() {
+        RunConfig c = new RunConfig();
+        c.set("data.train", "train.csv");
+        c.set("data.test", "test.csv");
+        c.set("data.format", "csv");           // csv (one file, header row) | dir (CSV file or folder of CSVs)
+        c.set("data.precision", "f64");        // f64 (double[] per image) | u8 (mapped uint8 cache, csv only)
+        c.set("data.limit", "0");              // first N training samples, 0 = all
+        c.set("seed", "42");
+        c.set("model.filters", "16");
+        c.set("model.h1", "256");
+        c.set("model.h2", "128");
+        c.set("model.dropout", "0.2");
+        c.set("optimizer.type", "sgd");        // sgd | adam | adamw
+        c.set("optimizer.lr", "0.01");
+        c.set("optimizer.weightDecay", "0.0001");
+        c.set("optimizer.momentum", "0.9");    // sgd only
+        c.set("optimizer.nesterov", "true");   // sgd only
+        c.set("optimizer.parallel", "true");   // update chunks on the common ForkJoin pool
+        c.set("train.batch", "128");
+        c.set("train.epochs", "128");
+        c.set("train.patience", "10");         // early stopping, 0 = off
+        c.set("train.stratified", "true");
+        c.set("schedule.type", "cosine");      // none | cosine | step | plateau
+        c.set("schedule.warmup", "2");         // epochs of linear warm-up before the schedule
+        c.set("schedule.minLr", "0.0001");     // cosine floor, plateau floor
+        c.set("schedule.step", "10");          // step: epochs per decay
+        c.set("schedule.gamma", "0.5");        // step and plateau: decay factor
+        c.set("schedule.patience", "3");       // plateau: epochs without improvement
+        c.set("threads.eval", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        c.set("threads.augment", Integer.toString(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)));   // 0 = no augmentation
+        c.set("checkpoint.path", "");          // e.g. checkpoint.dat: saved every epoch, resumed from; empty = off
+        c.set("output.weights", "weights.dat");
+        c.set("output.mapped", "weights.bin");        // empty = no raw copy for the GUI
+        c.set("metrics.accuracy", "accuracy_logs.csv");
+        c.set("metrics.eval", "eval_metrics.csv");    // empty = off; ".bin" writes binary
+        c.set("metrics.telemetry", "training_metrics.jsonl");   // empty = off
+        c.set("metrics.sampleEvery", "20");
+        c.set("metrics.headless", "false");           // no live accuracy window
+        return c;
+    }
+
+    /** Declares {@code key} (or changes its default). */
+    public RunConfig set(String key, String value) {
+        values.put(key, value);
+        return this;
+    }
+
+    /**
+     * Command-line options as {@code --key value} pairs, in order; a flag with no value (next token
+     * missing or another --key) maps to "true". Shared by every tool's main.
+     */
+    public static Map<String, String> parse(String[] args) {
+        Map<String, String> m = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            String key = args[i].substring(2);
+            m.put(key, i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : "true");
+        }
+        return m;
+    }
+
+    /** Applies {@code --config FILE} and then the other {@code --key value} pairs of {@code args}. */
+    public RunConfig apply(String[] args) throws IOException {
+        return apply(parse(args));
+    }
+
+    /** Same, for options already parsed (a tool that takes its own flags removes them first). */
+    public RunConfig apply(Map<String, String> cli) throws IOException {
+        cli = new LinkedHashMap<>(cli);
+        String file = cli.remove("config");
+        if (file != null) {
+            for (Map.Entry<String, String> e : readFile(file).entrySet()) override(e.getKey(), e.getValue(), "file " + file);
+        }
+        for (Map.Entry<String, String> e : cli.entrySet()) override(e.getKey(), e.getValue(), "command line");
+        return this;
+    }
+
+    private void override(String key, String value, String from) {
+        if (!values.containsKey(key)) throw new IllegalArgumentException("Unknown setting '" + key + "' from " + from);
+        values.put(key, value);
+        origin.put(key, from.startsWith("file") ? "file" : "cli");
+    }
+
+    // =========================
+    // Typed access
+    // =========================
+    public String str(String key) {
+        String v = values.get(key);
+        if (v == null) throw new IllegalArgumentException("Unknown setting '" + key + "'");
+        return v;
+    }
+
+    /** The value, or null when it is empty (an output that is switched off). */
+    public String path(String key) {
+        String v = str(key).trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    public int integer(String key) {
+        try { return Integer.parseInt(str(key).trim()); }
+        catch (NumberFormatException e) { throw new IllegalArgumentException(key + " must be an integer, got '" + str(key) + "'"); }
+    }
+
+    public double dbl(String key) {
+        try { return Double.parseDouble(str(key).trim()); }
+        catch (NumberFormatException e) { throw new IllegalArgumentException(key + " must be a number, got '" + str(key) + "'"); }
+    }
+
+    public boolean bool(String key) {
+        String v = str(key).trim().toLowerCase();
+        if (v.equals("true") || v.equals("yes") || v.equals("1")) return true;
+        if (v.equals("false") || v.equals("no") || v.equals("0")) return false;
+        throw new IllegalArgumentException(key + " must be true or false, got '" + str(key) + "'");
+    }
+
+    /** One "key = value" line per setting; overridden ones are marked with where they came from. */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            sb.append("  ").append(e.getKey()).append(" = ").append(e.getValue());
+            String o = origin.get(e.getKey());
+            if (o != null) sb.append("   (").append(o).append(')');
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // =========================
+    // Building the run
+    // =========================
+    public Optimizer optimizer() {
+        double lr = dbl("optimizer.lr"), wd = dbl("optimizer.weightDecay");
+        Optimizer o;
+        switch (str("optimizer.type").trim().toLowerCase()) {
+            case "sgd": o = new Sgd(lr, wd, dbl("optimizer.momentum"), bool("optimizer.nesterov")); break;
+            case "adam": o = new Adam(lr, wd, false); break;
+            case "adamw": o = new Adam(lr, wd, true); break;
+            default: throw new IllegalArgumentException("optimizer.type must be sgd, adam or adamw, got '" + str("optimizer.type") + "'");
+        }
+        o.parallel = bool("optimizer.parallel");
+        return o;
+    }
+
+    /** The lr schedule for {@code epochs} epochs, or null for a constant lr. */
+    public LrSchedule schedule(int epochs) {
+        int warmup = integer("schedule.warmup");
+        LrSchedule after;
+        switch (str("schedule.type").trim().toLowerCase()) {
+            case "none": after = null; break;
+            case "cosine": after = new LrSchedule.Cosine(Math.max(1, epochs - warmup), dbl("schedule.minLr")); break;
+            case "step": after = new LrSchedule.Step(integer("schedule.step"), dbl("schedule.gamma")); break;
+            case "plateau": after = new LrSchedule.ReduceOnPlateau(integer("schedule.patience"), dbl("schedule.gamma"), dbl("schedule.minLr")); break;
+            default: throw new IllegalArgumentException("schedule.type must be none, cosine, step or plateau, got '" + str("schedule.type") + "'");
+        }
+        return warmup > 0 ? new LrSchedule.Warmup(warmup, after) : after;
+    }
+
+    /** Everything but the model, data and augmentation. */
+    public Trainer configure(Trainer t) throws IOException {
+        t.optimizer = optimizer();
+        t.batchSize = integer("train.batch");
+        t.maxEpochs = integer("train.epochs");
+        t.stratified = bool("train.stratified");
+        t.schedule = schedule(t.maxEpochs);
+        int patience = integer("train.patience");
+        t.stopping = patience > 0 ? new EarlyStopping(patience) : null;
+        t.checkpointPath = path("checkpoint.path");
+        t.evalThreads = Math.max(1, integer("threads.eval"));
+        if (path("metrics.accuracy") == null) throw new IllegalArgumentException("metrics.accuracy needs a path");
+        t.logPath = path("metrics.accuracy");
+        t.evalLogPath = path("metrics.eval");
+        String telemetry = path("metrics.telemetry");
+        t.metrics = telemetry != null ? new TrainingMetrics(telemetry, integer("metrics.sampleEvery")) : null;
+        if (bool("metrics.headless")) t.headless = true;
+        return t;
+    }
+
+    /** The dataset at {@code key} ("data.train" or "data.test") in the configured format and precision. */
+    public NotLearningDigitRecognizer.Dataset load(String key) throws IOException {
+        String path = str(key), format = str("data.format").trim().toLowerCase(), precision = str("data.precision").trim().toLowerCase();
+        if (!precision.equals("f64") && !precision.equals("u8"))
+            throw new IllegalArgumentException("data.precision must be f64 or u8, got '" + str("data.precision") + "'");
+        NotLearningDigitRecognizer.Dataset ds;
+        switch (format) {
+            case "csv":
+                ds = new NotLearningDigitRecognizer.Dataset();
+                if (precision.equals("u8")) {
+                    MappedImages m = MappedImages.fromCsv(path);
+                    ds.inputs = m.inputs();
+                    ds.labels = m.labels();
+                } else {
+                    ds.inputs = DigitRecognizer.loadInputs(path, 784);
+                    ds.labels = DigitRecognizer.loadLabels(path, 784);
+                }
+                break;
+            case "dir":
+                if (precision.equals("u8")) throw new IllegalArgumentException("data.precision u8 needs data.format csv");
+                ds = NotLearningDigitRecognizer.loadDatasetFromPath(path);
+                break;
+            default: throw new IllegalArgumentException("data.format must be csv or dir, got '" + str("data.format") + "'");
+        }
+        int limit = integer("data.limit");
+        if (key.equals("data.train") && limit > 0 && limit < ds.inputs.size()) {
+            ds.inputs = ds.inputs.subList(0, limit);
+            ds.labels = ds.labels.subList(0, limit);
+        }
+        return ds;
+    }
+
+    // =========================
+    // Config files
+    // =========================
+    static Map<String, String> readFile(String file) throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        Map<String, String> out = new LinkedHashMap<>();
+        if (file.toLowerCase().endsWith(".json")) {
+            Json p = new Json(text, file);
+            p.object("", out);
+            p.skipSpace();
+            if (p.pos < text.length()) throw p.error("trailing content");
+        } else {
+            Properties props = new Properties();
+            try (Reader r = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) { props.load(r); }
+            for (String k : props.stringPropertyNames()) out.put(k, props.getProperty(k).trim());
+        }
+        return out;
+    }
+
+    // Just enough JSON for config files: objects, strings, numbers, booleans, null (= empty) and
+    // arrays of scalars (joined with commas).
+    private static final class Json {
+        final String s, file;
+        int pos;
+
+        Json(String s, String file) { this.s = s; this.file = file; }
+
+        void object(String prefix, Map<String, String> out) throws IOException {
+            expect('{');
+            skipSpace();
+            if (peek() == '}') { pos++; return; }
+            while (true) {
+                skipSpace();
+                String key = prefix + string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                if (peek() == '{') object(key + ".", out);
+                else out.put(key, value());
+                skipSpace();
+                if (peek() == ',') { pos++; continue; }
+                expect('}');
+                return;
+            }
+        }
+
+        String value() throws IOException {
+            char c = peek();
+            if (c == '"') return string();
+            if (c == '[') {
+                pos++;
+                List<String> items = new ArrayList<>();
+                skipSpace();
+                if (peek() == ']') { pos++; return ""; }
+                while (true) {
+                    skipSpace();
+                    items.add(value());
+                    skipSpace();
+                    if (peek() == ',') { pos++; continue; }
+                    expect(']');
+                    return String.join(",", items);
+                }
+            }
+            int start = pos;
+            while (pos < s.length() && ",}] \t\r\n".indexOf(s.charAt(pos)) < 0) pos++;
+            String word = s.substring(start, pos);
+            if (word.equals("null")) return "";
+            if (word.equals("true") || word.equals("false")) return word;
+            try { Double.parseDouble(word); } catch (NumberFormatException e) { throw error("unexpected '" + word + "'"); }
+            return word;
+        }
+
+        String string() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (pos >= s.length()) break;
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("bad \\u escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e);   // \" \\ \/
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        void skipSpace() { while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++; }
+
+        char peek() throws IOException {
+            if (pos >= s.length()) throw error("unexpected end");
+            return s.charAt(pos);
+        }
+
+        void expect(char c) throws IOException {
+            if (peek() != c) throw error("expected '" + c + "'");
+            pos++;
+        }
+
+        IOException error(String what) {
+            int line = 1;
+            for (int i = 0; i < Math.min(pos, s.length()); i++) if (s.charAt(i) == '\n') line++;
+            return new IOException(file + " line " + line + ": " + what);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// =========================
+// Sequential model container
+// =========================
+/**
+ * Chains layers front to back. The last layer is expected to be a {@link SoftmaxCrossEntropy} head,
+ * so {@link #backward(int)} can start from a class label. Gradients accumulate across calls until
+ * {@link #zeroGrads()}, which is how the trainers sum a batch before updating.
+ */
+public class Sequential {
+    final List<Layer> layers = new ArrayList<>();
+    int numClasses;
+    int[] fwdPhase, bwdPhase;   // Profiler ids, registered on first profiled pass
+
+    public Sequential add(Layer layer) {
+        if (layer instanceof Dense) ((Dense) layer).skipZeroInputGrad = inputIsRectified();
+        layers.add(layer);
+        return this;
+    }
+
+    // true when the current output is ReLU (or a fused conv block), optionally followed by
+    // max-pool/dropout: a zero there always maps back to a zero gradient, whatever flows into it
+    private boolean inputIsRectified() {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            Layer l = layers.get(i);
+            if (l instanceof ReLU || l instanceof ConvReLUPool) return true;
+            if (!(l instanceof MaxPool) && !(l instanceof Dropout)) return false;
+        }
+        return false;
+    }
+
+    /** Stable per-position name, e.g. "conv2d0" or "dense3"; used by metrics and the profiler. */
+    public String layerName(int i) {
+        return layers.get(i).getClass().getSimpleName().toLowerCase(java.util.Locale.ROOT) + i;
+    }
+
+    public double[] forward(double[] x, boolean training) {
+        // only training passes are split per layer; eval is timed as a whole by the trainer
+        if (Profiler.ENABLED && training) {
+            registerPhases();
+            for (int i = 0; i < layers.size(); i++) {
+                long t0 = Profiler.start();
+                x = layers.get(i).forward(x, true);
+                Profiler.stop(fwdPhase[i], t0);
+            }
+        } else {
+            for (Layer l : layers) x = l.forward(x, training);
+        }
+        numClasses = x.length;
+        return x;
+    }
+
+    /** Keys the random layers (dropout) for the next training forward pass of one sample. */
+    public void setSample(long seed, int epoch, int index) {
+        long sample = CounterRng.key(seed, epoch, index);
+        for (int i = 0; i < layers.size(); i++)
+            if (layers.get(i) instanceof Dropout) ((Dropout) layers.get(i)).setKey(CounterRng.mix(sample + i));
+    }
+
+    /** Backprops the softmax-CE loss for {@code label} and returns that loss. */
+    public double backward(int label) {
+        double loss = ((SoftmaxCrossEntropy) layers.get(layers.size() - 1)).loss(label);
+        double[] dy = new double[numClasses];
+        dy[label] = 1.0;
+        backprop(dy);
+        return loss;
+    }
+
+    /** Backprops the softmax-CE loss against a target distribution (soft labels); returns that loss. */
+    public double backward(double[] target) {
+        double loss = ((SoftmaxCrossEntropy) layers.get(layers.size() - 1)).loss(target);
+        backprop(target);
+        return loss;
+    }
+
+    private void backprop(double[] dy) {
+        if (Profiler.ENABLED) {
+            registerPhases();
+            for (int i = layers.size() - 1; i >= 0; i--) {
+                long t0 = Profiler.start();
+                dy = layers.get(i).backward(dy, i > 0);
+                Profiler.stop(bwdPhase[i], t0);
+            }
+        } else {
+            for (int i = layers.size() - 1; i >= 0; i--) dy = layers.get(i).backward(dy, i > 0);
+        }
+    }
+
+    private void registerPhases() {
+        if (fwdPhase != null && fwdPhase.length == layers.size()) return;
+        fwdPhase = new int[layers.size()];
+        bwdPhase = new int[layers.size()];
+        for (int i = 0; i < layers.size(); i++) fwdPhase[i] = Profiler.phase("fwd " + layerName(i));
+        for (int i = layers.size() - 1; i >= 0; i--) bwdPhase[i] = Profiler.phase("bwd " + layerName(i));
+    }
+
+    /** Same parameters, private caches and grads (see {@link Layer#replica}); one per worker thread. */
+    public Sequential replica(long seed) {
+        Random rnd = new Random(seed);
+        Sequential copy = new Sequential();
+        for (Layer l : layers) copy.add(l.replica(rnd));
+        copy.numClasses = numClasses;
+        return copy;
+    }
+
+    public int predict(double[] x) {
+        double[] out = forward(x, false);
+        int pred = 0;
+        for (int k = 1; k < out.length; k++) if (out[k] > out[pred]) pred = k;
+        return pred;
+    }
+
+    public List<double[]> params() {
+        List<double[]> all = new ArrayList<>();
+        for (Layer l : layers) for (double[] p : l.params()) all.add(p);
+        return all;
+    }
+
+    public List<double[]> grads() {
+        List<double[]> all = new ArrayList<>();
+        for (Layer l : layers) for (double[] g : l.grads()) all.add(g);
+        return all;
+    }
+
+    public List<int[]> shapes() {
+        List<int[]> all = new ArrayList<>();
+        for (Layer l : layers) for (int[] s : l.shapes()) all.add(s);
+        return all;
+    }
+
+    public void zeroGrads() {
+        flushGrads();   // drop anything still stashed along with the grads
+        for (double[] g : grads()) java.util.Arrays.fill(g, 0.0);
+    }
+
+    /** Completes deferred batch-level grad work; call before reading grads after a batch. */
+    public void flushGrads() {
+        for (Layer l : layers) l.flushGrads();
+    }
+
+    public Sequential setBatchedGrads(boolean batched) {
+        for (Layer l : layers) l.setBatchedGrads(batched);
+        return this;
+    }
+
+    // =========================
+    // Weight save/load
+    // =========================
+    // Each param is written as a nested double array in its logical shape, in layer order.
+    // For the DigitRecognizer architecture that is exactly the historical weights.dat layout:
+    // convK, convB, w1, b1, w2, b2, w3, b3.
+    public void save(String filename) throws IOException {
+        List<double[]> ps = params();
+        List<int[]> ss = shapes();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
+            for (int i = 0; i < ps.size(); i++) out.writeObject(nest(ps.get(i), ss.get(i)));
+        }
+    }
+
+    public void load(String filename) throws IOException, ClassNotFoundException {
+        List<double[]> ps = params();
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
+            for (double[] p : ps) {
+                int n = flatten(in.readObject(), p, 0);
+                if (n != p.length)
+                    throw new IOException("Weight file does not match model: expected " + p.length + " values, got " + n);
+            }
+        }
+    }
+
+    // Raw little-endian layout for memory mapping: "NNWB", version, param count, each param length,
+    // zero padding to a 64-byte boundary, then all params back to back as doubles.
+    static final int RAW_MAGIC = 0x4E4E5742, RAW_VERSION = 1;
+
+    public void saveMapped(String filename) throws IOException {
+        List<double[]> ps = params();
+        long header = rawHeaderBytes(ps.size()), values = 0;
+        for (double[] p : ps) values += p.length;
+        Path path = Paths.get(filename);
+        Files.deleteIfExists(path);
+        ByteBuffer buf = OffHeap.map(path, FileChannel.MapMode.READ_WRITE, 0, header + 8 * values);
+        buf.putInt(RAW_MAGIC).putInt(RAW_VERSION).putInt(ps.size());
+        for (double[] p : ps) buf.putInt(p.length);
+        DoubleBuffer data = buf.position((int) header).slice().order(buf.order()).asDoubleBuffer();
+        for (double[] p : ps) data.put(p);
+        ((MappedByteBuffer) buf).force();
+    }
+
+    /**
+     * Loads a {@link #saveMapped} file by mapping it read-only and bulk-copying each param. The model
+     * keeps its own heap arrays; the mapping is only the fast path into them.
+     */
+    public void loadMapped(String filename) throws IOException {
+        List<double[]> ps = params();
+        Path path = Paths.get(filename);
+        ByteBuffer buf = OffHeap.map(path, FileChannel.MapMode.READ_ONLY, 0, Files.size(path));
+        if (buf.getInt() != RAW_MAGIC || buf.getInt() != RAW_VERSION) throw new IOException("Not a raw weight file: " + filename);
+        if (buf.getInt() != ps.size()) throw new IOException("Weight file does not match model: param count differs");
+        for (double[] p : ps)
+            if (buf.getInt() != p.length) throw new IOException("Weight file does not match model: param size differs");
+        DoubleBuffer data = buf.position((int) rawHeaderBytes(ps.size())).slice().order(buf.order()).asDoubleBuffer();
+        for (double[] p : ps) data.get(p);
+    }
+
+    private static long rawHeaderBytes(int params) {
+        return (12L + 4L * params + OffHeap.ALIGN - 1) / OffHeap.ALIGN * OffHeap.ALIGN;
+    }
+
+    static Object nest(double[] flat, int[] shape) {
+        if (shape.length == 1) return flat.clone();
+        Object arr = Array.newInstance(double.class, shape);
+        fill(arr, flat, 0, shape, 0);
+        return arr;
+    }
+
+    private static int fill(Object arr, double[] flat, int pos, int[] shape, int dim) {
+        if (dim == shape.length - 1) {
+            double[] row = (double[]) arr;
+            System.arraycopy(flat, pos, row, 0, row.length);
+            return pos + row.length;
+        }
+        for (int i = 0; i < shape[dim]; i++) pos = fill(Array.get(arr, i), flat, pos, shape, dim + 1);
+        return pos;
+    }
+
+    private static int flatten(Object arr, double[] dst, int pos) throws IOException {
+        if (arr instanceof double[]) {
+            double[] row = (double[]) arr;
+            if (pos + row.length > dst.length) return pos + row.length;
+            System.arraycopy(row, 0, dst, pos, row.length);
+            return pos + row.length;
+        }
+        if (!(arr instanceof Object[])) throw new IOException("Unexpected entry in weight file: " + arr);
+        for (Object sub : (Object[]) arr) pos = flatten(sub, dst, pos);
+        return pos;
+    }
+}
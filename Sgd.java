@@ -0,0 +1,36 @@
+// =========================
+// SGD with optional (Nesterov) momentum and L2
+// =========================
+public class Sgd extends Optimizer {
+    final double momentum;
+    final boolean nesterov;
+
+    public Sgd(double lr, double weightDecay) { this(lr, weightDecay, 0.0, false); }
+
+    public Sgd(double lr, double weightDecay, double momentum, boolean nesterov) {
+        super(lr, weightDecay);
+        this.momentum = momentum;
+        this.nesterov = nesterov;
+    }
+
+    @Override
+    protected int stateBuffers() { return momentum > 0 ? 1 : 0; }   // velocity
+
+    @Override
+    protected void update(double[] p, double[] g, double[][] s, int off, int from, int to,
+                          double invBs, double decay) {
+        if (momentum == 0) {
+            // plain SGD, same arithmetic as the original per-array loops
+            for (int i = from; i < to; i++) p[i] -= lr * (g[i] * invBs + decay * p[i]);
+            return;
+        }
+        double mu = momentum;
+        double[] v = s[0];
+        for (int i = from; i < to; i++) {
+            double grad = g[i] * invBs + decay * p[i];
+            double vi = mu * v[off + i] + grad;
+            v[off + i] = vi;
+            p[i] -= lr * (nesterov ? grad + mu * vi : vi);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+// =========================
+// Softmax + cross-entropy head
+// =========================
+/**
+ * Forward produces class probabilities. Backward takes the target distribution (one-hot label, or
+ * soft targets when distilling) instead of an upstream gradient and returns dLoss/dLogits =
+ * prob - target.
+ */
+public class SoftmaxCrossEntropy implements Layer {
+    double[] prob, dx;
+
+    public static double[] softmax(double[] x, double[] out) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double v : x) if (v > max) max = v;
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            out[i] = Math.exp(x[i] - max);
+            sum += out[i];
+        }
+        for (int i = 0; i < x.length; i++) out[i] /= sum;
+        return out;
+    }
+
+    @Override
+    public Layer replica(java.util.Random rnd) { return new SoftmaxCrossEntropy(); }
+
+    @Override
+    public double[] forward(double[] x, boolean training) {
+        if (prob == null || prob.length != x.length) { prob = new double[x.length]; dx = new double[x.length]; }
+        return softmax(x, prob);
+    }
+
+    /** Cross-entropy of the last forward call against a class label. */
+    public double loss(int label) {
+        return -Math.log(Math.max(prob[label], 1e-300));
+    }
+
+    /** Cross-entropy of the last forward call against a target distribution. */
+    public double loss(double[] target) {
+        double l = 0.0;
+        for (int k = 0; k < prob.length; k++) if (target[k] != 0.0) l -= target[k] * Math.log(Math.max(prob[k], 1e-300));
+        return l;
+    }
+
+    @Override
+    public double[] backward(double[] target, boolean propagate) {
+        for (int k = 0; k < prob.length; k++) dx[k] = prob[k] - target[k];
+        return dx;
+    }
+}
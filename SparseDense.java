@@ -0,0 +1,98 @@
+import java.util.Random;
+
+// =========================
+// Fully connected layer with CSR weights
+// =========================
+/**
+ * A pruned {@link Dense} layer with only the nonzero weights kept. W is [in][out], so the CSR rows
+ * are inputs: row i lists the outputs that input i feeds, with their weights. Forward visits only
+ * the nonzero inputs and, within each, only the surviving weights, so activation sparsity and
+ * weight sparsity both cut work. Per output, the adds happen in the same input order as in Dense,
+ * so a SparseDense gives the same results as the masked Dense it came from.
+ * <p>
+ * Backward walks the same rows: dx[i] is row i dotted with dy, and each stored weight gets
+ * x[i] * dy[col]. Training therefore keeps the sparsity pattern fixed, with the same grads as a
+ * masked Dense on its surviving weights. Grad buffers are allocated on first use, so an
+ * inference-only model never pays for them.
+ */
+public class SparseDense implements Layer {
+    final int in, out;
+    final int[] rowPtr;    // [in + 1]
+    final char[] cols;     // [nnz] output index (out is at most 65535)
+    final double[] vals;   // [nnz]
+    final double[] b;
+
+    final double[] y;
+    double[] x;                  // input of the last forward call
+    double[] dx, dVals, db;      // created by the first backward/grads() call
+
+    public SparseDense(int in, int out, int[] rowPtr, char[] cols, double[] vals, double[] b) {
+        this.in = in; this.out = out;
+        this.rowPtr = rowPtr; this.cols = cols; this.vals = vals; this.b = b;
+        y = new double[out];
+    }
+
+    /** Keeps the nonzero entries of {@code d}'s weights. */
+    public static SparseDense of(Dense d) {
+        if (d.out > Character.MAX_VALUE + 1) throw new IllegalArgumentException("Too many outputs for CSR: " + d.out);
+        int nnz = 0;
+        for (double w : d.W) if (w != 0.0) nnz++;
+        int[] rowPtr = new int[d.in + 1];
+        char[] cols = new char[nnz];
+        double[] vals = new double[nnz];
+        int k = 0;
+        for (int i = 0; i < d.in; i++) {
+            int base = i * d.out;
+            for (int j = 0; j < d.out; j++) {
+                double w = d.W[base + j];
+                if (w != 0.0) { cols[k] = (char) j; vals[k++] = w; }
+            }
+            rowPtr[i + 1] = k;
+        }
+        return new SparseDense(d.in, d.out, rowPtr, cols, vals, d.b.clone());
+    }
+
+    public int nnz() { return vals.length; }
+
+    @Override
+    public Layer replica(Random rnd) { return new SparseDense(in, out, rowPtr, cols, vals, b); }
+
+    @Override
+    public double[] forward(double[] x, boolean training) {
+        this.x = x;
+        System.arraycopy(b, 0, y, 0, out);
+        for (int i = 0; i < in; i++) {
+            double xi = x[i];
+            if (xi == 0.0) continue;
+            for (int k = rowPtr[i], end = rowPtr[i + 1]; k < end; k++) y[cols[k]] += xi * vals[k];
+        }
+        return y;
+    }
+
+    @Override
+    public double[] backward(double[] dy, boolean propagate) {
+        grads();
+        if (propagate && dx == null) dx = new double[in];
+        for (int j = 0; j < out; j++) db[j] += dy[j];
+        for (int i = 0; i < in; i++) {
+            double xi = x[i], s = 0.0;
+            for (int k = rowPtr[i], end = rowPtr[i + 1]; k < end; k++) {
+                double g = dy[cols[k]];
+                dVals[k] += xi * g;
+                s += vals[k] * g;
+            }
+            if (propagate) dx[i] = s;
+        }
+        return propagate ? dx : null;
+    }
+
+    // the CSR values stand in for W: a 1 x nnz weight tensor, so L2 applies to them as to W
+    @Override public double[][] params() { return new double[][]{vals, b}; }
+    @Override public int[][] shapes()    { return new int[][]{{1, vals.length}, {out}}; }
+
+    @Override
+    public double[][] grads() {
+        if (dVals == null) { dVals = new double[vals.length]; db = new double[out]; }
+        return new double[][]{dVals, db};
+    }
+}
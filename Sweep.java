@@ -0,0 +1,368 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// =========================
+// Hyperparameter sweep (run: java Sweep --train FILE.csv --test FILE.csv [options])
+// =========================
+/**
+ * Runs many DigitRecognizer trainings side by side in one JVM. They all read the same
+ * memory-mapped uint8 copy of the data ({@link MappedImages}). Each trial is one {@link Trainer}
+ * on one pool thread: single-threaded optimizer and evaluation, an optional CPU-seconds budget,
+ * and console output off. Its per-epoch accuracy goes to out/trial_NNN.csv.
+ * <p>
+ * Modes:
+ * <ul>
+ *   <li>grid: every combination of the listed values.</li>
+ *   <li>random: {@code --trials} samples. A list is picked from uniformly; a range "lo..hi" is
+ *       sampled log-uniformly for lr/lambda and uniformly otherwise.</li>
+ *   <li>halving: successive halving. {@code --trials} random configs train {@code --min-epochs};
+ *       the best 1/eta go on to eta times as many epochs, until {@code --epochs}. Trials resume
+ *       from per-trial checkpoints.</li>
+ *   <li>hyperband: several halving brackets trading trial count against starting epochs.</li>
+ * </ul>
+ * In grid and random mode a trial is also stopped when, after {@code --grace} epochs, its accuracy
+ * is below the median of the trials that reached the same epoch (at least 3 of them).
+ * {@link EarlyStopping}'s chance-level and divergence checks apply in every mode. Results, best
+ * first, go to out/sweep_results.csv.
+ * <p>
+ * Search space options (comma list or lo..hi range): --lr, --batch, --lambda, --dropout,
+ * --filters, --h1, --h2. Other options: --mode, --trials N, --epochs N, --min-epochs N, --eta N,
+ * --parallel N (trials at once, default all cores), --cpu-seconds S (per trial, 0 = none),
+ * --grace N, --limit N (training samples), --seed S, --out DIR.
+ */
+public class Sweep {
+    static final String[] PARAMS = {"lr", "batch", "lambda", "dropout", "filters", "h1", "h2"};
+    static final String[] DEFAULTS = {"0.005,0.01,0.02", "64,128", "0,0.0001", "0.2", "16", "256", "128"};
+
+    /** One search dimension: a value list or a lo..hi range. */
+    static final class Param {
+        final String name;
+        final double[] values;   // null for a range
+        final double lo, hi;
+
+        Param(String name, String spec) {
+            this.name = name;
+            if (spec.contains("..")) {
+                String[] r = spec.split("\\.\\.");
+                values = null;
+                lo = Double.parseDouble(r[0]);
+                hi = Double.parseDouble(r[1]);
+            } else {
+                values = Arrays.stream(spec.split(",")).mapToDouble(Double::parseDouble).toArray();
+                lo = hi = 0;
+            }
+        }
+
+        boolean integer() { return name.equals("batch") || name.equals("filters") || name.equals("h1") || name.equals("h2"); }
+
+        double sample(Random r) {
+            if (values != null) return values[r.nextInt(values.length)];
+            if ((name.equals("lr") || name.equals("lambda")) && lo > 0)
+                return Math.exp(Math.log(lo) + r.nextDouble() * (Math.log(hi) - Math.log(lo)));
+            return integer() ? Math.round(lo + r.nextDouble() * (hi - lo)) : lo + r.nextDouble() * (hi - lo);
+        }
+    }
+
+    /** Per-epoch accuracies of all trials, for the median stopping rule. */
+    static final class Board {
+        private final Map<Integer, List<Double>> byEpoch = new LinkedHashMap<>();
+
+        synchronized void report(int epoch, double acc) { byEpoch.computeIfAbsent(epoch, e -> new ArrayList<>()).add(acc); }
+
+        // median of the others at this epoch, NaN when fewer than 3 have reported
+        synchronized double medianExcluding(int epoch, double own) {
+            List<Double> l = new ArrayList<>(byEpoch.getOrDefault(epoch, new ArrayList<>()));
+            l.remove(own);
+            if (l.size() < 3) return Double.NaN;
+            l.sort(null);
+            int m = l.size() / 2;
+            return l.size() % 2 == 1 ? l.get(m) : (l.get(m - 1) + l.get(m)) / 2;
+        }
+    }
+
+    static final ThreadMXBean CPU = ManagementFactory.getThreadMXBean();
+
+    static final class Trial {
+        final int id;
+        final Map<String, Double> cfg;
+        final Stopper stopper;
+        String checkpoint;    // set when the trial trains in several legs (halving)
+        int epochs;
+        double bestAcc = Double.NaN, lastAcc = Double.NaN;
+        String status = "running";
+        long cpuNanos, wallNanos;
+
+        Trial(int id, Map<String, Double> cfg, Sweep sweep) {
+            this.id = id;
+            this.cfg = cfg;
+            stopper = new Stopper(this, sweep);
+        }
+
+        boolean alive() { return status.equals("running"); }
+
+        /**
+         * Trains until {@code totalEpochs}, resuming from the checkpoint if there is one. The model
+         * only lives for the call, so memory scales with the trials running, not the trials created.
+         */
+        void advance(Sweep sweep, int totalEpochs) throws IOException {
+            long t0 = System.nanoTime(), c0 = CPU.getCurrentThreadCpuTime();
+            stopper.cpuAtStart = c0;
+            Sequential model = DigitRecognizer.buildModel(cfg.get("filters").intValue(), cfg.get("h1").intValue(),
+                    cfg.get("h2").intValue(), cfg.get("dropout"), new Random(sweep.seed + id));
+            Trainer trainer = new Trainer(model, new Random(sweep.seed + id));
+            trainer.optimizer = new Sgd(cfg.get("lr"), cfg.get("lambda"), 0.9, true);
+            trainer.batchSize = cfg.get("batch").intValue();
+            trainer.maxEpochs = totalEpochs;
+            trainer.headless = true;
+            trainer.quiet = true;
+            trainer.evalThreads = 1;
+            trainer.logPath = new File(sweep.out, String.format("trial_%03d.csv", id)).getPath();
+            trainer.checkpointPath = checkpoint;
+            trainer.stopping = stopper;
+            trainer.train(sweep.trainX, sweep.trainY, sweep.testX, sweep.testY);
+            cpuNanos += CPU.getCurrentThreadCpuTime() - c0;
+            wallNanos += System.nanoTime() - t0;
+            if (trainer.stopReason != null) status = "stopped: " + trainer.stopReason;
+        }
+    }
+
+    /** EarlyStopping plus the CPU budget and the median rule. */
+    static final class Stopper extends EarlyStopping {
+        final Trial trial;
+        final Sweep sweep;
+        long cpuAtStart;
+
+        Stopper(Trial trial, Sweep sweep) {
+            super(Integer.MAX_VALUE);
+            this.trial = trial;
+            this.sweep = sweep;
+            restoreBest = false;
+        }
+
+        @Override
+        public String check(int epoch, double meanLoss, double acc, int numClasses, List<double[]> params) {
+            trial.epochs = epoch;
+            trial.lastAcc = acc;
+            if (!(acc <= trial.bestAcc)) trial.bestAcc = acc;
+            String reason = super.check(epoch, meanLoss, acc, numClasses, params);
+            if (reason != null) return reason;
+            sweep.board.report(epoch, acc);
+            long cpu = trial.cpuNanos + CPU.getCurrentThreadCpuTime() - cpuAtStart;
+            if (sweep.cpuBudgetNanos > 0 && cpu >= sweep.cpuBudgetNanos)
+                return String.format(Locale.ROOT, "cpu budget used (%.1f s)", cpu / 1e9);
+            if (sweep.medianRule && epoch >= sweep.grace) {
+                double median = sweep.board.medianExcluding(epoch, acc);
+                if (acc < median)
+                    return String.format(Locale.ROOT, "below median at epoch %d (%.2f%% < %.2f%%)", epoch, acc * 100, median * 100);
+            }
+            return null;
+        }
+    }
+
+    List<double[]> trainX, testX;
+    List<Integer> trainY, testY;
+    final Board board = new Board();
+    final List<Trial> trials = new ArrayList<>();
+    File out;
+    long seed;
+    long cpuBudgetNanos;
+    int grace;
+    boolean medianRule;
+    ExecutorService pool;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = RunConfig.parse(args);
+        if (!opt.containsKey("train") || !opt.containsKey("test")) {
+            System.err.println("usage: Sweep --train FILE.csv --test FILE.csv [--mode grid|random|halving|hyperband] [--lr LIST|lo..hi] ... (see class doc)");
+            System.exit(2);
+        }
+        Sweep s = new Sweep();
+        MappedImages train = MappedImages.fromCsv(opt.get("train")), test = MappedImages.fromCsv(opt.get("test"));
+        int limit = Math.min(train.size(), Integer.parseInt(opt.getOrDefault("limit", Integer.toString(train.size()))));
+        s.trainX = train.inputs().subList(0, limit);
+        s.trainY = train.labels().subList(0, limit);
+        s.testX = test.inputs();
+        s.testY = test.labels();
+        s.out = new File(opt.getOrDefault("out", "sweep"));
+        if (!s.out.isDirectory() && !s.out.mkdirs()) throw new IOException("Cannot create " + s.out);
+        s.seed = Long.parseLong(opt.getOrDefault("seed", "1"));
+        s.cpuBudgetNanos = (long) (Double.parseDouble(opt.getOrDefault("cpu-seconds", "0")) * 1e9);
+        s.grace = Integer.parseInt(opt.getOrDefault("grace", "2"));
+        String mode = opt.getOrDefault("mode", "grid");
+        int epochs = Integer.parseInt(opt.getOrDefault("epochs", "10"));
+        int trials = Integer.parseInt(opt.getOrDefault("trials", "12"));
+        int minEpochs = Integer.parseInt(opt.getOrDefault("min-epochs", "1"));
+        int eta = Integer.parseInt(opt.getOrDefault("eta", "3"));
+        int parallel = Integer.parseInt(opt.getOrDefault("parallel", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        List<Param> space = new ArrayList<>();
+        for (int i = 0; i < PARAMS.length; i++) space.add(new Param(PARAMS[i], opt.getOrDefault(PARAMS[i], DEFAULTS[i])));
+
+        s.pool = Executors.newFixedThreadPool(Math.max(1, parallel), r -> {
+            Thread th = new Thread(r, "sweep-trial");
+            th.setDaemon(true);
+            return th;
+        });
+        System.out.printf("Sweep: %s, %d training / %d test images, %d trials at a time%n", mode, limit, s.testX.size(), parallel);
+        long t0 = System.nanoTime();
+        Random rnd = new Random(s.seed);
+        switch (mode) {
+            case "grid":
+                s.medianRule = true;
+                s.run(s.start(grid(space)), epochs);
+                break;
+            case "random":
+                s.medianRule = true;
+                s.run(s.start(random(space, trials, rnd)), epochs);
+                break;
+            case "halving":
+                s.halving(random(space, trials, rnd), minEpochs, epochs, eta);
+                break;
+            case "hyperband": {
+                int sMax = (int) Math.floor(Math.log(epochs / (double) minEpochs) / Math.log(eta) + 1e-9);
+                for (int b = sMax; b >= 0; b--) {
+                    int n = (int) Math.ceil((sMax + 1) / (double) (b + 1) * Math.pow(eta, b));
+                    int r = (int) Math.max(minEpochs, Math.round(epochs * Math.pow(eta, -b)));
+                    System.out.printf("bracket %d: %d trials from %d epochs%n", b, n, r);
+                    s.halving(random(space, n, rnd), r, epochs, eta);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        s.pool.shutdownNow();
+        for (Trial t : s.trials) if (t.alive()) t.status = "done";
+        for (Trial t : s.trials) if (t.checkpoint != null) new File(t.checkpoint).delete();
+        s.writeSummary(new File(s.out, "sweep_results.csv"), (System.nanoTime() - t0) / 1e9);
+    }
+
+    static List<Map<String, Double>> grid(List<Param> space) {
+        List<Map<String, Double>> out = new ArrayList<>();
+        out.add(new LinkedHashMap<>());
+        for (Param p : space) {
+            if (p.values == null) throw new IllegalArgumentException("grid mode needs value lists, got a range for --" + p.name);
+            List<Map<String, Double>> next = new ArrayList<>();
+            for (Map<String, Double> base : out)
+                for (double v : p.values) {
+                    Map<String, Double> c = new LinkedHashMap<>(base);
+                    c.put(p.name, v);
+                    next.add(c);
+                }
+            out = next;
+        }
+        return out;
+    }
+
+    static List<Map<String, Double>> random(List<Param> space, int n, Random rnd) {
+        List<Map<String, Double>> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Map<String, Double> c = new LinkedHashMap<>();
+            for (Param p : space) c.put(p.name, p.sample(rnd));
+            out.add(c);
+        }
+        return out;
+    }
+
+    List<Trial> start(List<Map<String, Double>> configs) {
+        List<Trial> ts = new ArrayList<>();
+        for (Map<String, Double> c : configs) {
+            Trial t = new Trial(trials.size(), c, this);
+            trials.add(t);
+            ts.add(t);
+        }
+        return ts;
+    }
+
+    String checkpoint(Trial t) { return new File(out, String.format("trial_%03d.ckpt", t.id)).getPath(); }
+
+    // successive halving: train everyone to r epochs, keep the best 1/eta, multiply r by eta
+    void halving(List<Map<String, Double>> configs, int r, int maxEpochs, int eta) throws Exception {
+        List<Trial> rung = start(configs);
+        for (Trial t : rung) t.checkpoint = checkpoint(t);
+        while (true) {
+            int budget = Math.min(r, maxEpochs);
+            run(rung, budget);
+            List<Trial> alive = new ArrayList<>();
+            for (Trial t : rung) if (t.alive()) alive.add(t);
+            if (budget >= maxEpochs || alive.size() <= 1) break;
+            alive.sort(Comparator.comparingDouble((Trial t) -> t.lastAcc).reversed());
+            int keep = Math.max(1, alive.size() / eta);
+            for (Trial t : alive.subList(keep, alive.size())) t.status = "dropped after " + budget + " epochs";
+            rung = new ArrayList<>(alive.subList(0, keep));
+            r *= eta;
+        }
+    }
+
+    void run(List<Trial> ts, int totalEpochs) throws Exception {
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (Trial t : ts) {
+            if (!t.alive()) continue;
+            jobs.add(() -> {
+                try {
+                    t.advance(this, totalEpochs);
+                } catch (Exception e) {
+                    t.status = "failed: " + e;
+                }
+                System.out.printf(Locale.ROOT, "trial %3d %s -> %d epochs, best %.2f%%, %s%n", t.id, describe(t.cfg),
+                        t.epochs, t.bestAcc * 100, t.alive() ? "running" : t.status);
+                return null;
+            });
+        }
+        for (Future<Void> f : pool.invokeAll(jobs)) {
+            try { f.get(); } catch (ExecutionException e) { throw new IllegalStateException("Trial crashed", e.getCause()); }
+        }
+    }
+
+    static String describe(Map<String, Double> cfg) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Double> e : cfg.entrySet()) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(e.getKey()).append('=').append(fmt(e.getValue()));
+        }
+        return sb.toString();
+    }
+
+    // 4 significant digits, no trailing zeros: 0.01, 64, 0.0001
+    static String fmt(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return new java.math.BigDecimal(v).round(new java.math.MathContext(4)).stripTrailingZeros().toPlainString();
+    }
+
+    void writeSummary(File file, double wallSecs) throws IOException {
+        List<Trial> sorted = new ArrayList<>(trials);
+        sorted.sort(Comparator.comparingDouble((Trial t) -> Double.isNaN(t.bestAcc) ? -1 : t.bestAcc).reversed());
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(file))) {
+            w.write("trial," + String.join(",", PARAMS) + ",epochs,bestAcc,lastAcc,cpuSeconds,wallSeconds,status\n");
+            for (Trial t : sorted) {
+                StringBuilder sb = new StringBuilder().append(t.id);
+                for (String p : PARAMS) sb.append(',').append(fmt(t.cfg.get(p)));
+                sb.append(',').append(t.epochs).append(',').append(t.bestAcc).append(',').append(t.lastAcc)
+                  .append(String.format(Locale.ROOT, ",%.1f,%.1f,", t.cpuNanos / 1e9, t.wallNanos / 1e9))
+                  .append('"').append(t.status.replace("\"", "'")).append("\"\n");
+                w.write(sb.toString());
+            }
+        }
+        System.out.printf("%nSweep finished in %.0f s, %d trials; results in %s%n", wallSecs, trials.size(), file);
+        for (int i = 0; i < Math.min(5, sorted.size()); i++) {
+            Trial t = sorted.get(i);
+            System.out.printf(Locale.ROOT, "  #%d  %.2f%%  trial %d: %s (%d epochs)%n", i + 1, t.bestAcc * 100, t.id, describe(t.cfg), t.epochs);
+        }
+    }
+}
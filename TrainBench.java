@@ -0,0 +1,325 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+// =========================
+// End-to-end training benchmark with a stored baseline (run: java TrainBench [options] [--key value ...])
+// =========================
+/**
+ * Trains the DigitRecognizer model with the DigitRecognizer run configuration for a fixed number of
+ * optimizer steps on {@link SyntheticDigits}, so every run does the same work. It reports samples/s,
+ * allocation rate, peak RSS and peak heap. With {@code --real} it also measures wall time until test
+ * accuracy reaches {@code --target} on a small slice of a real CSV. Runs headless: the trainer never
+ * opens the AccuracyVisualizer and all logs go to a temporary directory.
+ * <p>
+ * The timed window is the whole {@link Trainer#train} call, so samples/s includes the trainer's
+ * setup (sink and worker threads) and the end-of-epoch evaluation on {@value #SYNTH_TEST} test
+ * samples. Both are fixed costs per run, small next to the default step count, and identical in the
+ * baseline.
+ * <p>
+ * The results are compared with a baseline file. The exit status is 1 when samples/s falls more than
+ * {@code --threshold} below the baseline. The other metrics are only flagged. A baseline written with
+ * a different CPU count, step count or batch size measures different work, so the comparison is
+ * skipped and nothing is gated. A Java version mismatch is printed as a warning.
+ * <p>
+ * {@code --telemetry-overhead} pairs every repeat with a run that writes {@link TrainingMetrics}
+ * telemetry and fails when telemetry costs more than {@code --max-overhead}. The gate uses
+ * {@link TrainingMetrics#overhead}, which compares sampled and unsampled steps inside the same run;
+ * the whole-run samples/s difference is printed too, but run-to-run noise swamps a few percent.
+ * Options:
+ *   --steps N            measured optimizer steps per repeat (default 60)
+ *   --repeat R           measured repeats; the median is reported (default 3)
+ *   --warmup N           steps run first and discarded (JIT) (default 20)
+ *   --baseline FILE      default bench_baseline.properties
+ *   --threshold F        allowed samples/s drop, as a fraction (default 0.10)
+ *   --update             write the results as the new baseline instead of comparing
+ *   --real FILE.csv      time-to-accuracy on this CSV: first 2000 rows train, next 500 test
+ *   --target A           accuracy for time-to-accuracy (default 0.8)
+ *   --max-epochs E       give up on the target after E epochs (default 10)
+ *   --telemetry-overhead also time each repeat with --metrics.telemetry on
+ *   --max-overhead F     allowed telemetry share of step time (default 0.02)
+ * Any RunConfig key (e.g. --optimizer.type adam, --train.batch 64) changes the benchmarked run.
+ */
+public class TrainBench {
+    static final int REAL_TRAIN = 2000, REAL_TEST = 500, SYNTH_TEST = 256;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> opt = RunConfig.parse(args);
+        int steps = Integer.parseInt(take(opt, "steps", "60"));
+        int repeat = Integer.parseInt(take(opt, "repeat", "3"));
+        int warmup = Integer.parseInt(take(opt, "warmup", "20"));
+        String baselinePath = take(opt, "baseline", "bench_baseline.properties");
+        double threshold = Double.parseDouble(take(opt, "threshold", "0.10"));
+        boolean update = Boolean.parseBoolean(take(opt, "update", "false"));
+        String real = take(opt, "real", null);
+        double target = Double.parseDouble(take(opt, "target", "0.8"));
+        int maxEpochs = Integer.parseInt(take(opt, "max-epochs", "10"));
+        boolean telemetryOverhead = Boolean.parseBoolean(take(opt, "telemetry-overhead", "false"));
+        double maxOverhead = Double.parseDouble(take(opt, "max-overhead", "0.02"));
+
+        Path tmp = Files.createTempDirectory("nn-trainbench");
+        boolean ok = true;
+        try {
+            RunConfig cfg = benchConfig(tmp, opt);
+            RunConfig withTelemetry = benchConfig(tmp, opt).set("metrics.telemetry", tmp.resolve("telemetry.jsonl").toString());
+            int batch = cfg.integer("train.batch");
+
+            Properties result = new Properties();
+            result.setProperty("cpus", Integer.toString(Runtime.getRuntime().availableProcessors()));
+            result.setProperty("java", System.getProperty("java.version"));
+            result.setProperty("steps", Integer.toString(steps));
+            result.setProperty("batch", Integer.toString(batch));
+
+            // ----- Throughput and allocation on synthetic data -----
+            List<double[]> testX = new ArrayList<>();
+            List<Integer> testY = new ArrayList<>();
+            SyntheticDigits.generate(SYNTH_TEST, 99, testX, testY);
+            if (warmup > 0) {
+                timedRun(cfg, warmup * batch, testX, testY);
+                if (telemetryOverhead) timedRun(withTelemetry, warmup * batch, testX, testY);
+            }
+            double[] sps = new double[repeat], alloc = new double[repeat];
+            double[] spsOn = new double[repeat], overhead = new double[repeat];
+            for (int r = 0; r < repeat; r++) {
+                double[] m = timedRun(cfg, steps * batch, testX, testY);
+                sps[r] = m[0];
+                alloc[r] = m[1];
+                System.out.printf(Locale.ROOT, "repeat %d: %.1f samples/s, %.1f MB/s allocated%n", r + 1, sps[r], alloc[r]);
+                if (telemetryOverhead) {
+                    double[] on = timedRun(withTelemetry, steps * batch, testX, testY);
+                    spsOn[r] = on[0];
+                    overhead[r] = on[2];
+                    System.out.printf(Locale.ROOT, "repeat %d with telemetry: %.1f samples/s, telemetry %.2f%% of step time%n",
+                            r + 1, spsOn[r], overhead[r] * 100);
+                }
+            }
+            result.setProperty("samples_per_s", fmt(median(sps)));
+            result.setProperty("alloc_mb_per_s", fmt(median(alloc)));
+            if (telemetryOverhead) result.setProperty("telemetry_overhead_pct", String.format(Locale.ROOT, "%.2f", median(overhead) * 100));
+
+            // ----- Time to accuracy on a real subset -----
+            if (real != null) {
+                double secs = timeToAccuracy(cfg, real, target, maxEpochs);
+                result.setProperty("time_to_acc_s", Double.isNaN(secs) ? "not reached" : fmt(secs));
+                result.setProperty("target", Double.toString(target));
+            }
+
+            result.setProperty("peak_rss_mb", fmt(peakRssMb()));
+            result.setProperty("peak_heap_mb", fmt(peakHeapMb()));
+
+            if (update) {
+                try (Writer w = new FileWriter(baselinePath)) { result.store(w, "TrainBench baseline; refresh with --update on the reference machine"); }
+                System.out.println();
+                report(result, null, threshold);
+                System.out.println("Baseline written to " + baselinePath);
+            } else {
+                Properties base = null;
+                if (new File(baselinePath).exists()) {
+                    base = new Properties();
+                    try (Reader r = new FileReader(baselinePath)) { base.load(r); }
+                } else {
+                    System.out.println("No baseline at " + baselinePath + "; run with --update to create one");
+                }
+                System.out.println();
+                ok = report(result, base, threshold);
+            }
+            if (telemetryOverhead) {
+                double share = median(overhead);
+                boolean within = share <= maxOverhead;
+                System.out.printf(Locale.ROOT, "%s: telemetry (every %d batches) takes %.2f%% of step time, limit %.0f%% (whole runs: %+.1f%% samples/s)%n",
+                        within ? "OK" : "FAIL", cfg.integer("metrics.sampleEvery"), share * 100, maxOverhead * 100,
+                        (median(spsOn) / median(sps) - 1) * 100);
+                ok &= within;
+            }
+        } finally {
+            deleteTree(tmp.toFile());
+        }
+        // after the finally, so a failed gate still removes the temporary directory
+        if (!ok) System.exit(1);
+    }
+
+    private static RunConfig benchConfig(Path tmp, Map<String, String> opt) throws IOException {
+        return RunConfig.trainingDefaults()
+                .set("checkpoint.path", "")
+                .set("output.weights", "")
+                .set("output.mapped", "")
+                .set("train.patience", "0")
+                .set("threads.augment", "0")
+                .set("metrics.accuracy", tmp.resolve("accuracy.csv").toString())
+                .set("metrics.eval", "")
+                .set("metrics.telemetry", "")
+                .set("metrics.headless", "true")
+                .apply(opt);
+    }
+
+    // one epoch of n synthetic samples; returns {samples/s, MB/s allocated, telemetry share or NaN}
+    static double[] timedRun(RunConfig cfg, int n, List<double[]> testX, List<Integer> testY) throws IOException {
+        List<double[]> xs = new ArrayList<>();
+        List<Integer> ys = new ArrayList<>();
+        SyntheticDigits.generate(n, 7, xs, ys);
+        Trainer t = trainer(cfg, 1);
+        long allocBefore = allocatedBytes();
+        long t0 = System.nanoTime();
+        t.train(xs, ys, testX, testY);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        long allocated = allocatedBytes() - allocBefore;
+        double overhead = t.metrics != null ? t.metrics.overhead() : Double.NaN;
+        return new double[]{n / secs, allocated / (1024.0 * 1024.0) / secs, overhead};
+    }
+
+    static double timeToAccuracy(RunConfig cfg, String csv, double target, int maxEpochs) throws IOException {
+        List<double[]> xs = DigitRecognizer.loadInputs(csv, 784);
+        List<Integer> ys = DigitRecognizer.loadLabels(csv, 784);
+        if (xs.size() < REAL_TRAIN + REAL_TEST)
+            throw new IOException(csv + " has " + xs.size() + " rows, time-to-accuracy needs " + (REAL_TRAIN + REAL_TEST));
+        Trainer t = trainer(cfg, maxEpochs);
+        long t0 = System.nanoTime();
+        double[] reachedAt = {Double.NaN};
+        t.stopping = new EarlyStopping(Integer.MAX_VALUE) {
+            { restoreBest = false; }
+            @Override
+            public String check(int epoch, double meanLoss, double acc, int numClasses, List<double[]> params) {
+                if (acc >= target) {
+                    reachedAt[0] = (System.nanoTime() - t0) / 1e9;
+                    return String.format(Locale.ROOT, "reached %.2f%% at epoch %d", acc * 100, epoch);
+                }
+                return super.check(epoch, meanLoss, acc, numClasses, params);
+            }
+        };
+        t.train(xs.subList(0, REAL_TRAIN), ys.subList(0, REAL_TRAIN),
+                xs.subList(REAL_TRAIN, REAL_TRAIN + REAL_TEST), ys.subList(REAL_TRAIN, REAL_TRAIN + REAL_TEST));
+        return reachedAt[0];
+    }
+
+    // a fresh model and trainer from the same seed, so every run does identical arithmetic
+    private static Trainer trainer(RunConfig cfg, int epochs) throws IOException {
+        java.util.Random rnd = new java.util.Random(cfg.integer("seed"));
+        Sequential model = DigitRecognizer.buildModel(cfg.integer("model.filters"), cfg.integer("model.h1"),
+                cfg.integer("model.h2"), cfg.dbl("model.dropout"), rnd);
+        Trainer t = cfg.configure(new Trainer(model, rnd));
+        t.maxEpochs = epochs;
+        t.schedule = cfg.schedule(epochs);
+        t.quiet = true;
+        return t;
+    }
+
+    // =========================
+    // Comparison
+    // =========================
+    // higher is better for samples/s only; a metric is flagged when it is worse by more than threshold.
+    // A baseline from a different cpus/steps/batch setup is not compared at all.
+    static boolean report(Properties now, Properties base, double threshold) {
+        boolean ok = true;
+        if (base != null) {
+            if (differs(now, base, "java"))
+                System.out.println("warning: java is " + now.getProperty("java") + ", baseline has " + base.getProperty("java"));
+            boolean comparable = true;
+            for (String k : new String[]{"cpus", "steps", "batch"})
+                if (differs(now, base, k)) {
+                    System.out.println("not comparable: " + k + " is " + now.getProperty(k) + ", baseline has " + base.getProperty(k));
+                    comparable = false;
+                }
+            if (!comparable) {
+                report(now, null, threshold);
+                System.out.println("SKIPPED: the baseline measures a different setup; rerun with matching options or --update");
+                return true;
+            }
+        }
+        System.out.printf("%-16s %14s %14s %9s%n", "metric", "now", "baseline", "change");
+        String[][] metrics = {{"samples_per_s", "+"}, {"alloc_mb_per_s", "-"}, {"peak_rss_mb", "-"}, {"peak_heap_mb", "-"}, {"time_to_acc_s", "-"}};
+        for (String[] m : metrics) {
+            String v = now.getProperty(m[0]);
+            if (v == null) continue;
+            String b = base == null ? null : base.getProperty(m[0]);
+            String change = "", flag = "";
+            Double dv = number(v), db = number(b);
+            if (dv != null && db != null && db > 0) {
+                double rel = dv / db - 1.0;
+                change = String.format(Locale.ROOT, "%+.1f%%", rel * 100);
+                boolean worse = m[1].equals("+") ? rel < -threshold : rel > threshold;
+                if (worse) flag = m[0].equals("samples_per_s") ? "  REGRESSION" : "  worse";
+                if (worse && m[0].equals("samples_per_s")) ok = false;
+            }
+            System.out.printf("%-16s %14s %14s %9s%s%n", m[0], v, b == null ? "-" : b, change, flag);
+        }
+        if (base != null)
+            System.out.println(ok ? String.format(Locale.ROOT, "OK: samples/s within %.0f%% of the baseline", threshold * 100)
+                    : String.format(Locale.ROOT, "FAIL: samples/s more than %.0f%% below the baseline", threshold * 100));
+        return ok;
+    }
+
+    private static boolean differs(Properties now, Properties base, String key) {
+        return !now.getProperty(key).equals(base.getProperty(key, now.getProperty(key)));
+    }
+
+    private static Double number(String s) {
+        if (s == null) return null;
+        try { return Double.parseDouble(s); } catch (NumberFormatException e) { return null; }
+    }
+
+    // =========================
+    // Measurements
+    // =========================
+    // bytes allocated by all live threads (training thread, optimizer pool); threads that end
+    // during the run, e.g. eval workers, are not counted, so keep the test set small
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] bytes = mx.getThreadAllocatedBytes(mx.getAllThreadIds());
+        long sum = 0;
+        for (long b : bytes) if (b > 0) sum += b;
+        return sum;
+    }
+
+    // VmHWM from /proc (Linux); NaN elsewhere
+    static double peakRssMb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status")))
+                if (line.startsWith("VmHWM:")) return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024.0;
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return Double.NaN;
+    }
+
+    static double peakHeapMb() {
+        long sum = 0;
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans())
+            if (p.getType() == MemoryType.HEAP) sum += p.getPeakUsage().getUsed();
+        return sum / (1024.0 * 1024.0);
+    }
+
+    private static double median(double[] v) {
+        double[] s = v.clone();
+        Arrays.sort(s);
+        return s.length % 2 == 1 ? s[s.length / 2] : (s[s.length / 2 - 1] + s[s.length / 2]) / 2;
+    }
+
+    private static String fmt(double v) { return String.format(Locale.ROOT, "%.1f", v); }
+
+    private static String take(Map<String, String> opt, String key, String def) {
+        String v = opt.remove(key);
+        return v != null ? v : def;
+    }
+
+    private static void deleteTree(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteTree(c);
+        f.delete();
+    }
+}
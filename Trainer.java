@@ -0,0 +1,373 @@
+import java.awt.GraphicsEnvironment;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// =========================
+// Mini-batch trainer shared by every model configuration
+// =========================
+public class Trainer {
+    final Sequential model;
+
+    // ----- Hyperparams (defaults match the original DigitRecognizer run) -----
+    Optimizer optimizer = new Sgd(0.01, 0.0001);   // lr, L2 on weights (rank > 1 params)
+    int batchSize = 128;
+    int maxEpochs = 128;
+    String logPath = "accuracy_logs.csv";
+    String checkpointPath = null;   // model, optimizer, schedule and stopping state, written every epoch and resumed from if usable
+    LrSchedule schedule = null;     // constant lr when null
+    EarlyStopping stopping = null;  // always runs maxEpochs when null (NaN loss still aborts)
+    String stopReason = null;       // set when a run ends before maxEpochs
+    TrainingMetrics metrics = null; // sampled per-batch telemetry, off when null
+    boolean headless = GraphicsEnvironment.isHeadless() || Boolean.getBoolean("nn.headless");
+    boolean quiet = false;          // no console lines (a sweep runs many trainers side by side)
+    long sinkIntervalMs = 500;      // how often the CSV log / visualizer are fed
+    long seed;                      // epoch order and dropout masks derive from (seed, epoch, sample); share it across workers
+    boolean stratified = true;      // spread each class evenly over the epoch, so every batch and shard sees the class mix
+    DataParallel dataParallel = null; // multi-JVM gradient all-reduce, single process when null
+    AugmentPipeline augment = null; // training images come from background augmentation when set
+    Pruning pruning = null;         // pruned weights re-zeroed after every optimizer step (fine-tuning) when set
+    Distillation distill = null;    // soft teacher targets blended with the labels when set
+    String evalLogPath = null;      // per-epoch confusion matrix, P/R/F1 and ECE (CSV, or binary for ".bin"); off when null
+    int evalThreads = Runtime.getRuntime().availableProcessors();
+    EvalMetrics lastEval;           // metrics of the latest evaluate()
+
+    private Sequential[] evalReplicas;
+    private ExecutorService evalPool;
+
+    // Profiler phase ids
+    static final int P_SHUFFLE = Profiler.phase("shuffle");
+    static final int P_AUGMENT = Profiler.phase("augment wait");
+    static final int P_UPDATE = Profiler.phase("update");
+    static final int P_METRICS = Profiler.phase("metrics");
+    static final int P_EVAL = Profiler.phase("eval");
+    static final int P_LOG = Profiler.phase("log+visualizer");
+    static final int P_CHECKPOINT = Profiler.phase("checkpoint");
+
+    public Trainer(Sequential model, Random rnd) {
+        this.model = model;
+        this.seed = rnd.nextLong();
+    }
+
+    public void train(List<double[]> trainInputs, List<Integer> trainLabels,
+                      List<double[]> testInputs, List<Integer> testLabels) throws IOException {
+        optimizer.bind(model);
+        model.setBatchedGrads(true);
+        int rank = dataParallel == null ? 0 : dataParallel.rank();
+        int world = dataParallel == null ? 1 : dataParallel.world();
+        boolean leader = rank == 0;   // only rank 0 evaluates, logs and checkpoints
+        if (!leader) metrics = null;
+        if (metrics != null) metrics.bind(model);
+        double baseLr = optimizer.lr;
+        int startEpoch = 1;
+        if (checkpointPath != null && new File(checkpointPath).exists()) {
+            startEpoch = loadCheckpoint(checkpointPath) + 1;
+            if (!quiet && startEpoch > 1) System.out.println("Resuming from " + checkpointPath + " at epoch " + startEpoch);
+        }
+
+        // ----- UI + CSV (fed from a background thread) -----
+        // closed (flushed) on any exit, including an exception from eval, the all-reduce or a checkpoint write
+        TrainingMetrics telemetry = metrics;
+        boolean profiling = Profiler.claim();   // false when an entry point or another trainer holds it
+        try (AccuracyPublisher publisher = new AccuracyPublisher(sinkIntervalMs);
+             EvalMetrics.Log evalLog = leader && evalLogPath != null ? new EvalMetrics.Log(evalLogPath, startEpoch > 1) : null;
+             telemetry) {
+            if (leader) publisher.addSink(new CsvAccuracySink(logPath, startEpoch > 1));
+            if (leader && !headless) publisher.addSink(new AccuracyVisualizer());
+            publisher.start();
+
+            for (int epoch = startEpoch; epoch <= maxEpochs; epoch++) {
+                if (schedule != null) optimizer.lr = schedule.lr(epoch, baseLr);
+
+                // Shuffle indices (a function of seed and epoch only, so a resumed run replays it)
+                long t0 = Profiler.start();
+                int[] indices = epochOrder(trainLabels, seed, epoch, stratified);
+                if (augment != null) augment.start(localOrder(indices, rank, world), seed, epoch);
+                Profiler.stop(P_SHUFFLE, t0);
+
+                double lossSum = 0.0;
+                for (int batchStart = 0; batchStart < trainInputs.size(); batchStart += batchSize) {
+                    int batchEnd = Math.min(batchStart + batchSize, trainInputs.size());
+                    int batch = batchStart / batchSize;
+                    boolean sampled = metrics != null && metrics.shouldSample(batch);
+                    long tStep = metrics != null ? System.nanoTime() : 0L;
+                    if (sampled) metrics.beginBatch();
+                    model.zeroGrads();
+                    double batchLoss = 0.0;
+                    // each worker takes every world-th sample of the global batch
+                    for (int p = batchStart + rank; p < batchEnd; p += world) {
+                        int idx = indices[p];
+                        model.setSample(seed, epoch, idx);
+                        double[] x = trainInputs.get(idx);
+                        if (augment != null) {
+                            long ta = Profiler.start();
+                            x = augment.next();
+                            Profiler.stop(P_AUGMENT, ta);
+                        }
+                        if (distill != null) {
+                            double[] target = distill.target(x, trainLabels.get(idx));
+                            model.forward(x, true);
+                            batchLoss += model.backward(target);
+                        } else {
+                            model.forward(x, true);
+                            batchLoss += model.backward(trainLabels.get(idx));
+                        }
+                    }
+                    model.flushGrads();
+                    lossSum += batchLoss;
+                    if (metrics != null) metrics.countSamples(batchEnd - batchStart);
+                    int localBs = (batchEnd - batchStart - rank + world - 1) / world;
+                    if (sampled) {
+                        t0 = Profiler.start();
+                        metrics.record(epoch, batch, batchLoss / Math.max(1, localBs), localBs, model);
+                        Profiler.stop(P_METRICS, t0);
+                    }
+                    // don't push NaN/inf grads into the weights, stop the epoch right here
+                    // (workers can't leave the ring mid-epoch; they agree to stop after it instead)
+                    if (dataParallel == null && (Double.isNaN(batchLoss) || Double.isInfinite(batchLoss))) break;
+                    t0 = Profiler.start();
+                    if (dataParallel != null) dataParallel.step(model, optimizer, batchEnd - batchStart);
+                    else optimizer.step(batchEnd - batchStart);
+                    if (pruning != null) pruning.apply();
+                    Profiler.stop(P_UPDATE, t0);
+                    Profiler.endStep();
+                    if (metrics != null) metrics.timeStep(sampled, batchEnd - batchStart, System.nanoTime() - tStep);
+                }
+                if (dataParallel != null) {
+                    dataParallel.drain(model, optimizer);
+                    if (pruning != null) pruning.apply();
+                }
+                double meanLoss = lossSum / Math.max(1, (trainInputs.size() - rank + world - 1) / world);
+
+                // ----- Evaluate on test set -----
+                t0 = Profiler.start();
+                double[] perDigitAcc = new double[10];
+                double acc = leader ? evaluate(testInputs, testLabels, perDigitAcc) : Double.NaN;
+                // every rank needs it: the schedule and early stopping must agree, or the replicas drift apart
+                if (dataParallel != null) acc = dataParallel.broadcast(acc);
+                Profiler.stop(P_EVAL, t0);
+
+                t0 = Profiler.start();
+                if (leader && !quiet) System.out.printf("Epoch %d: Total Accuracy %s, loss %.4f, lr %.5f%n", epoch,
+                        Double.isNaN(acc) ? "N/A" : String.format("%.2f%%", acc * 100.0), meanLoss, optimizer.lr);
+                if (leader) publisher.publish(epoch, acc, perDigitAcc);
+                if (leader && lastEval != null && lastEval.total > 0) {
+                    if (!quiet) System.out.println("  eval: " + lastEval.summary());
+                    if (evalLog != null) evalLog.write(epoch, lastEval);
+                }
+                if (leader && !quiet && augment != null) System.out.println("  " + augment.report());
+                Profiler.stop(P_LOG, t0);
+
+                if (schedule != null) schedule.onEpochEnd(epoch, acc);
+                if (stopping != null) stopReason = stopping.check(epoch, meanLoss, acc, model.numClasses, model.params());
+                else if (Double.isNaN(meanLoss) || Double.isInfinite(meanLoss)) stopReason = "diverged: training loss is " + meanLoss;
+                if (dataParallel != null && dataParallel.anyStop(stopReason != null) && stopReason == null)
+                    stopReason = "stopped by another worker";
+                if (stopReason != null) {
+                    if (!quiet) System.out.println("Stopping at epoch " + epoch + ": " + stopReason);
+                    if (stopping != null) stopping.restore(model.params());
+                    break;
+                }
+
+                t0 = Profiler.start();
+                if (leader && checkpointPath != null) saveCheckpoint(checkpointPath, epoch);
+                Profiler.stop(P_CHECKPOINT, t0);
+                Profiler.endStep();
+                Profiler.reportEpoch(epoch);
+            }
+        } finally {
+            shutdownEval();
+            if (profiling) Profiler.release();
+        }
+    }
+
+    // =========================
+    // Epoch order
+    // =========================
+    /**
+     * Sample order of one epoch, a pure function of (seed, epoch). Stratified: each class is
+     * shuffled on its own and its samples are spread at even spacing (plus jitter) over the epoch,
+     * so every contiguous batch, and every strided data-parallel shard of it, gets close to the
+     * overall class mix.
+     */
+    static int[] epochOrder(List<Integer> labels, long seed, int epoch, boolean stratified) {
+        int n = labels.size();
+        Random r = new Random(CounterRng.key(seed, epoch, -1));
+        List<Integer> order = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) order.add(i);
+        Collections.shuffle(order, r);
+        if (stratified) {
+            int classes = 0;
+            for (int l : labels) classes = Math.max(classes, l + 1);
+            int[] count = new int[classes], seen = new int[classes];
+            for (int l : labels) count[l]++;
+            double[] pos = new double[n];
+            for (int i : order) {
+                int c = labels.get(i);
+                pos[i] = (seen[c]++ + r.nextDouble()) / count[c];
+            }
+            order.sort((a, b) -> Double.compare(pos[a], pos[b]));
+        }
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) out[i] = order.get(i);
+        return out;
+    }
+
+    // the samples this worker visits, in visiting order (see the batch loop in train)
+    int[] localOrder(int[] indices, int rank, int world) {
+        int[] out = new int[indices.length];
+        int n = 0;
+        for (int batchStart = 0; batchStart < indices.length; batchStart += batchSize) {
+            int batchEnd = Math.min(batchStart + batchSize, indices.length);
+            for (int p = batchStart + rank; p < batchEnd; p += world) out[n++] = indices[p];
+        }
+        return java.util.Arrays.copyOf(out, n);
+    }
+
+    // =========================
+    // Checkpoints (params, optimizer, schedule and early-stopping state)
+    // =========================
+    void saveCheckpoint(String filename, int epoch) throws IOException {
+        // write to a temp file first so a crash mid-write never clobbers the last good checkpoint
+        File tmp = new File(filename + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(epoch);
+            for (double[] p : model.params()) out.writeObject(p);
+            out.writeUTF(optimizer.getClass().getName());
+            optimizer.writeState(out);
+            out.writeUTF(schedule == null ? "" : schedule.getClass().getName());
+            out.writeObject(schedule == null ? new double[0] : schedule.state());
+            out.writeBoolean(stopping != null);
+            if (stopping != null) {
+                out.writeObject(stopping.state());
+                out.writeObject(stopping.bestParams);
+            }
+        }
+        File dst = new File(filename);
+        if (dst.exists() && !dst.delete()) throw new IOException("Cannot replace checkpoint " + filename);
+        if (!tmp.renameTo(dst)) throw new IOException("Cannot write checkpoint " + filename);
+    }
+
+    /**
+     * Restores params and optimizer state (optimizer must already be bound), plus the schedule and
+     * early-stopping state when the run has the same kind. Returns the saved epoch, or 0 for a fresh
+     * start when the checkpoint is already at maxEpochs or was written for another model or optimizer.
+     * Nothing is changed in that case.
+     */
+    int loadCheckpoint(String filename) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
+            int epoch = in.readInt();
+            if (epoch >= maxEpochs) return fresh(filename, "it is at epoch " + epoch + " of " + maxEpochs);
+            List<double[]> params = model.params();
+            List<double[]> saved = new ArrayList<>();
+            for (double[] p : params) {
+                double[] s = (double[]) in.readObject();
+                if (s.length != p.length) return fresh(filename, "it does not match the model");
+                saved.add(s);
+            }
+            String opt = in.readUTF();
+            if (!opt.equals(optimizer.getClass().getName()))
+                return fresh(filename, "it was written by " + opt + ", trainer uses " + optimizer.getClass().getName());
+            if (!optimizer.readState(in)) return fresh(filename, "its optimizer state does not match the model");
+            for (int i = 0; i < params.size(); i++) System.arraycopy(saved.get(i), 0, params.get(i), 0, params.get(i).length);
+
+            try {
+                String sched = in.readUTF();
+                double[] schedState = (double[]) in.readObject();
+                if (schedule != null && sched.equals(schedule.getClass().getName())) schedule.restore(schedState);
+                if (in.readBoolean()) {
+                    double[] stopState = (double[]) in.readObject();
+                    double[][] best = (double[][]) in.readObject();
+                    if (best != null && best.length != params.size()) best = null;
+                    for (int i = 0; best != null && i < best.length; i++)
+                        if (best[i].length != params.get(i).length) best = null;
+                    if (stopping != null) stopping.restoreState(stopState, best);
+                }
+            } catch (EOFException e) {
+                // written before schedule/stopping state was saved: those start over
+            }
+            return epoch;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Corrupt checkpoint " + filename, e);
+        }
+    }
+
+    private int fresh(String filename, String why) {
+        if (!quiet) System.out.println("Ignoring checkpoint " + filename + " (" + why + "); starting fresh");
+        return 0;
+    }
+
+    // =========================
+    // Evaluation
+    // =========================
+    /**
+     * Returns total accuracy (NaN when there is no test data) and fills per-digit recall. The full
+     * metrics are left in {@link #lastEval}. Each of the {@code evalThreads} workers scores a
+     * contiguous slice on its own model replica into its own {@link EvalMetrics}; the counters are
+     * merged once all workers are done.
+     */
+    double evaluate(List<double[]> inputs, List<Integer> labels, double[] perDigitAcc) {
+        lastEval = null;
+        if (inputs.isEmpty()) { java.util.Arrays.fill(perDigitAcc, 0.0); return Double.NaN; }
+        int classes = model.forward(inputs.get(0), false).length;
+        int threads = Math.max(1, Math.min(evalThreads, inputs.size() / 256));   // small sets are not worth a task
+        EvalMetrics total;
+        if (threads == 1) {
+            total = evalSlice(model, inputs, labels, 0, inputs.size(), classes);
+        } else {
+            if (evalReplicas == null || evalReplicas.length != threads) {
+                evalReplicas = new Sequential[threads];
+                for (int t = 0; t < threads; t++) evalReplicas[t] = model.replica(t);   // shares the params
+                if (evalPool != null) evalPool.shutdownNow();
+                evalPool = Executors.newFixedThreadPool(threads, r -> {
+                    Thread th = new Thread(r, "eval-worker");
+                    th.setDaemon(true);
+                    return th;
+                });
+            }
+            List<Future<EvalMetrics>> parts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final Sequential m = evalReplicas[t];
+                final int from = (int) ((long) inputs.size() * t / threads), to = (int) ((long) inputs.size() * (t + 1) / threads);
+                parts.add(evalPool.submit(() -> evalSlice(m, inputs, labels, from, to, classes)));
+            }
+            total = new EvalMetrics(classes);
+            try {
+                for (Future<EvalMetrics> f : parts) total.merge(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during evaluation", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Evaluation failed", e.getCause());
+            }
+        }
+        lastEval = total;
+        for (int d = 0; d < perDigitAcc.length; d++) perDigitAcc[d] = d < classes ? total.recall(d) : 0.0;
+        return total.accuracy();
+    }
+
+    /** Stops the evaluation workers; a later evaluate() starts new ones. */
+    void shutdownEval() {
+        if (evalPool != null) evalPool.shutdownNow();
+        evalPool = null;
+        evalReplicas = null;
+    }
+
+    private static EvalMetrics evalSlice(Sequential m, List<double[]> inputs, List<Integer> labels, int from, int to, int classes) {
+        EvalMetrics em = new EvalMetrics(classes);
+        for (int i = from; i < to; i++) em.add(labels.get(i), m.forward(inputs.get(i), false));
+        return em;
+    }
+}
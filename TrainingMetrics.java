@@ -0,0 +1,126 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// =========================
+// Sampled training telemetry (loss, grad/weight norms, dead ReLUs, throughput)
+// =========================
+/**
+ * Records one row every {@code sampleEvery} batches. Grad norms are taken on the batch-averaged
+ * gradient, right before the optimizer step. Dead ReLU fraction is the share of units that never
+ * fired for any sample of the sampled batch (ReLUs only track activity on sampled batches). A fused
+ * {@link ConvReLUPool} block counts as a ReLU over its conv units.
+ * Output is JSONL when the path ends in ".jsonl", CSV otherwise.
+ */
+public class TrainingMetrics implements AutoCloseable {
+    final int sampleEvery;
+    final boolean jsonl;
+    final BufferedWriter out;
+
+    List<String> paramNames, reluNames;
+    List<Layer> relus;   // ReLU or ConvReLUPool
+    long lastNanos;
+    int samplesSinceLast;
+    // whole-step time split by sampled/unsampled batches, for overhead()
+    long sampledNanos, plainNanos, sampledSamples, plainSamples;
+
+    public TrainingMetrics(String path, int sampleEvery) throws IOException {
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.jsonl = path.endsWith(".jsonl");
+        this.out = new BufferedWriter(new FileWriter(path));
+    }
+
+    void bind(Sequential model) throws IOException {
+        paramNames = new ArrayList<>(); reluNames = new ArrayList<>(); relus = new ArrayList<>();
+        for (int i = 0; i < model.layers.size(); i++) {
+            Layer l = model.layers.get(i);
+            String name = model.layerName(i);
+            int[][] shapes = l.shapes();
+            for (int[] s : shapes) paramNames.add(name + (s.length > 1 ? ".w" : ".b"));
+            if (l instanceof ReLU || l instanceof ConvReLUPool) { reluNames.add(name); relus.add(l); }
+        }
+        if (!jsonl) {
+            StringBuilder sb = new StringBuilder("epoch,batch,loss,samplesPerSec");
+            for (String n : paramNames) sb.append(",gnorm_").append(n).append(",wnorm_").append(n);
+            for (String n : reluNames) sb.append(",dead_").append(n);
+            out.write(sb.append('\n').toString());
+        }
+        lastNanos = System.nanoTime();
+    }
+
+    boolean shouldSample(int batch) { return batch % sampleEvery == 0; }
+
+    /** Switches ReLU activity tracking on for a batch that will be recorded. */
+    void beginBatch() {
+        for (Layer l : relus) {
+            if (l instanceof ReLU) ((ReLU) l).startTracking();
+            else ((ConvReLUPool) l).startTracking();
+        }
+    }
+
+    void countSamples(int n) { samplesSinceLast += n; }
+
+    void timeStep(boolean sampled, int n, long nanos) {
+        if (sampled) { sampledNanos += nanos; sampledSamples += n; }
+        else { plainNanos += nanos; plainSamples += n; }
+    }
+
+    /**
+     * Share of the training-step time spent on telemetry: what sampled steps took beyond the
+     * per-sample cost of unsampled steps, over the time of all steps. Both kinds interleave in one
+     * run, so machine drift hits them alike. NaN until both kinds have run.
+     */
+    public double overhead() {
+        if (sampledSamples == 0 || plainSamples == 0) return Double.NaN;
+        double extra = sampledNanos - sampledSamples * ((double) plainNanos / plainSamples);
+        return extra / (sampledNanos + plainNanos);
+    }
+
+    void record(int epoch, int batch, double meanLoss, int batchSize, Sequential model) throws IOException {
+        long now = System.nanoTime();
+        double sps = samplesSinceLast / Math.max(1e-9, (now - lastNanos) / 1e9);
+        lastNanos = now; samplesSinceLast = 0;
+
+        List<double[]> ps = model.params(), gs = model.grads();
+        double invBs = 1.0 / Math.max(1, batchSize);
+        StringBuilder sb = new StringBuilder();
+        if (jsonl) {
+            sb.append(String.format(Locale.ROOT, "{\"epoch\":%d,\"batch\":%d,\"loss\":%s,\"samplesPerSec\":%.1f", epoch, batch, num(meanLoss), sps));
+            sb.append(",\"gradNorm\":{");
+            for (int i = 0; i < ps.size(); i++) sb.append(i > 0 ? "," : "").append('"').append(paramNames.get(i)).append("\":").append(num(norm(gs.get(i)) * invBs));
+            sb.append("},\"weightNorm\":{");
+            for (int i = 0; i < ps.size(); i++) sb.append(i > 0 ? "," : "").append('"').append(paramNames.get(i)).append("\":").append(num(norm(ps.get(i))));
+            sb.append("},\"deadRelu\":{");
+            for (int i = 0; i < relus.size(); i++) sb.append(i > 0 ? "," : "").append('"').append(reluNames.get(i)).append("\":").append(num(deadFraction(relus.get(i))));
+            sb.append("}}\n");
+        } else {
+            sb.append(epoch).append(',').append(batch).append(',').append(num(meanLoss)).append(',').append(String.format(Locale.ROOT, "%.1f", sps));
+            for (int i = 0; i < ps.size(); i++) sb.append(',').append(num(norm(gs.get(i)) * invBs)).append(',').append(num(norm(ps.get(i))));
+            for (Layer l : relus) sb.append(',').append(num(deadFraction(l)));
+            sb.append('\n');
+        }
+        out.write(sb.toString());
+    }
+
+    private static double norm(double[] a) {
+        double s = 0.0;
+        for (double v : a) s += v * v;
+        return Math.sqrt(s);
+    }
+
+    private static double deadFraction(Layer l) {
+        return l instanceof ReLU ? ((ReLU) l).stopTracking() : ((ConvReLUPool) l).stopTracking();
+    }
+
+    // JSON has no NaN/Infinity literals, write them as strings
+    private String num(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) return jsonl ? "\"" + v + "\"" : Double.toString(v);
+        return Double.toString(v);
+    }
+
+    @Override
+    public void close() throws IOException { out.close(); }
+}